@@ -53,6 +53,7 @@
 import org.spongepowered.api.service.permission.SubjectData;
 import org.spongepowered.api.service.sql.SqlService;
 import org.spongepowered.api.util.Tristate;
+import org.spongepowered.api.world.storage.WorldProperties;
 import org.spongepowered.common.SpongeBootstrap;
 import org.spongepowered.common.SpongeGame;
 import org.spongepowered.common.SpongeImpl;
@@ -67,12 +68,19 @@
 import org.spongepowered.common.service.sql.SqlServiceImpl;
 import org.spongepowered.common.util.SpongeHooks;
 import org.spongepowered.common.world.storage.SpongePlayerDataHandler;
+import org.spongepowered.server.command.VanillaCommand;
+import org.spongepowered.server.config.VanillaConfig;
 import org.spongepowered.server.guice.VanillaGuiceModule;
 import org.spongepowered.server.launch.VanillaCommandLine;
 import org.spongepowered.server.plugin.VanillaPluginManager;
+import org.spongepowered.server.world.storage.ChunkCodec;
+import org.spongepowered.server.world.storage.MappedRegionFileCache;
+import org.spongepowered.server.world.storage.RegionMigrator;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 public final class SpongeVanilla extends AbstractPluginContainer {
@@ -80,6 +88,7 @@ public final class SpongeVanilla extends AbstractPluginContainer {
     public static final SpongeVanilla INSTANCE = new SpongeVanilla();
 
     private final SpongeGame game;
+    private VanillaConfig config = new VanillaConfig();
 
     private SpongeVanilla() {
         Guice.createInjector(new VanillaGuiceModule(this, LogManager.getLogger(SpongeImpl.ECOSYSTEM_NAME))).getInstance(SpongeImpl.class);
@@ -123,6 +132,8 @@ public static void main(String[] args) {
     public void preInitialize() throws Exception {
         SpongeImpl.getLogger().info("Loading Sponge...");
 
+        this.config = VanillaConfig.load(SpongeImpl.getSpongeConfigDir().resolve("vanilla.conf"));
+
         this.game.getEventManager().registerListeners(this, SpongeInternalListeners.getInstance());
 
         // Pre-initialize registry
@@ -176,14 +187,32 @@ public void onServerAboutToStart() {
     }
 
     public void onServerStarting() {
+        this.game.getCommandManager().register(this, VanillaCommand.create(), "spongevanilla", "sv");
+
         SpongeImpl.postState(GameStartingServerEvent.class, GameState.SERVER_STARTING);
         SpongeImpl.postState(GameStartedServerEvent.class, GameState.SERVER_STARTED);
         ((IMixinServerCommandManager) MinecraftServer.getServer().getCommandManager()).registerLowPriorityCommands(this.game);
         SpongePlayerDataHandler.init();
+
+        if (MappedRegionFileCache.isEnabled()) {
+            if (MappedRegionFileCache.getCodec() == ChunkCodec.NONE) {
+                final List<String> worlds = new ArrayList<>();
+                for (WorldProperties properties : this.game.getServer().getAllWorldProperties()) {
+                    worlds.add(properties.getWorldName());
+                }
+                SpongeImpl.getLogger().warn("Chunks are saved uncompressed with the NONE chunk-codec. Vanilla servers and other tools "
+                        + "can't read them and will regenerate them in these worlds: {}", worlds);
+            }
+
+            if (getConfig().getWorld().isChunkMigration()) {
+                RegionMigrator.start();
+            }
+        }
     }
 
     public void onServerStopping() {
         SpongeImpl.postState(GameStoppingServerEvent.class, GameState.SERVER_STOPPING);
+        RegionMigrator.stop();
     }
 
     public void onServerStopped() throws IOException {
@@ -191,6 +220,10 @@ public void onServerStopped() throws IOException {
         ((SqlServiceImpl) this.game.getServiceManager().provideUnchecked(SqlService.class)).close();
     }
 
+    public VanillaConfig getConfig() {
+        return this.config;
+    }
+
     @Override
     public String getId() {
         return SpongeImpl.ECOSYSTEM_ID;
@@ -0,0 +1,435 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.command;
+
+import static org.spongepowered.api.command.args.GenericArguments.doubleNum;
+import static org.spongepowered.api.command.args.GenericArguments.integer;
+import static org.spongepowered.api.command.args.GenericArguments.optional;
+import static org.spongepowered.api.command.args.GenericArguments.seq;
+import static org.spongepowered.api.command.args.GenericArguments.world;
+
+import net.minecraft.util.BlockPos;
+import net.minecraft.world.WorldServer;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.command.CommandException;
+import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.args.CommandContext;
+import org.spongepowered.api.command.spec.CommandSpec;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+import org.spongepowered.api.world.Locatable;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+import org.spongepowered.api.world.storage.WorldProperties;
+import org.spongepowered.common.SpongeImpl;
+import org.spongepowered.common.util.VecHelper;
+import org.spongepowered.server.interfaces.IMixinAnvilChunkLoader;
+import org.spongepowered.server.interfaces.IMixinChunkProviderServer;
+import org.spongepowered.server.interfaces.IMixinVanillaServer;
+import org.spongepowered.server.interfaces.IMixinWorldServer;
+import org.spongepowered.server.tick.PhaseHistogram;
+import org.spongepowered.server.tick.PhaseProfiler;
+import org.spongepowered.server.tick.PhaseTimings;
+import org.spongepowered.server.tick.ScheduledTaskQueue;
+import org.spongepowered.server.tick.TickGovernor;
+import org.spongepowered.server.tick.TickPhase;
+import org.spongepowered.server.tick.TickTimeStatistics;
+import org.spongepowered.server.tick.WorldTickTimes;
+import org.spongepowered.server.world.AsyncWorldLoader;
+import org.spongepowered.server.world.ChunkPregenerator;
+import org.spongepowered.server.world.ChunkSaveQueue;
+import org.spongepowered.server.world.ChunkUnloadMetrics;
+import org.spongepowered.server.world.EntityIndex;
+import org.spongepowered.server.world.PregenTask;
+import org.spongepowered.server.world.TickedWorld;
+import org.spongepowered.server.world.VanillaDimensionManager;
+import org.spongepowered.server.world.explosion.ExplosionBenchmark;
+import org.spongepowered.server.world.explosion.ExplosionEngine;
+import org.spongepowered.server.world.explosion.LightUpdateBatch;
+import org.spongepowered.server.world.storage.ChunkCache;
+import org.spongepowered.server.world.storage.ChunkCodec;
+import org.spongepowered.server.world.storage.ChunkCodecStatistics;
+import org.spongepowered.server.world.storage.MappedRegionFileCache;
+import org.spongepowered.server.world.storage.RegionMigrator;
+import org.spongepowered.server.world.storage.SaveWriter;
+
+import java.util.Optional;
+
+/**
+ * The <code>/spongevanilla</code> command for diagnostics specific to
+ * SpongeVanilla.
+ */
+public final class VanillaCommand {
+
+    private static final String PERMISSION_PREFIX = "sponge.command.vanilla.";
+
+    private VanillaCommand() {
+    }
+
+    public static CommandSpec create() {
+        return CommandSpec.builder()
+                .description(Text.of("SpongeVanilla diagnostic commands"))
+                .child(createTpsCommand(), "tps")
+                .child(createPhasesCommand(), "phases")
+                .child(createGovernorCommand(), "governor")
+                .child(createChunksCommand(), "chunks")
+                .child(createPregenCommand(), "pregen")
+                .child(createStorageCommand(), "storage")
+                .child(createExplosionsCommand(), "explosions")
+                .child(createWorldsCommand(), "worlds")
+                .build();
+    }
+
+    private static CommandSpec createTpsCommand() {
+        return CommandSpec.builder()
+                .description(Text.of("Shows tick time statistics of the loaded worlds over the last minute"))
+                .permission(PERMISSION_PREFIX + "tps")
+                .arguments(optional(world(Text.of("world"))))
+                .executor((src, args) -> {
+                    final Optional<WorldProperties> properties = args.getOne("world");
+                    for (TickedWorld ticked : VanillaDimensionManager.getTickedWorlds()) {
+                        if (!properties.isPresent() || matches(ticked, properties.get())) {
+                            final TickTimeStatistics statistics = ticked.getTickTimes().getStatistics(WorldTickTimes.MINUTE);
+                            src.sendMessage(Text.of(TextColors.GOLD, ticked.getWorld().getWorldInfo().getWorldName(), TextColors.RESET,
+                                    String.format(": %.2f TPS, mean %s, p50 %s, p95 %s, p99 %s, max %s", statistics.getTps(),
+                                            formatNanos(statistics.getMean()), formatNanos(statistics.getP50()),
+                                            formatNanos(statistics.getP95()), formatNanos(statistics.getP99()),
+                                            formatNanos(statistics.getMax()))));
+                        }
+                    }
+                    return CommandResult.success();
+                })
+                .build();
+    }
+
+    private static CommandSpec createPhasesCommand() {
+        return CommandSpec.builder()
+                .description(Text.of("Shows how long the phases of each tick take"))
+                .permission(PERMISSION_PREFIX + "phases")
+                .arguments(optional(world(Text.of("world"))))
+                .child(CommandSpec.builder()
+                        .description(Text.of("Resets the tick phase timings"))
+                        .permission(PERMISSION_PREFIX + "phases.reset")
+                        .executor((src, args) -> {
+                            PhaseProfiler.reset();
+                            src.sendMessage(Text.of(TextColors.GREEN, "The tick phase timings have been reset."));
+                            return CommandResult.success();
+                        })
+                        .build(), "reset")
+                .executor(VanillaCommand::showPhases)
+                .build();
+    }
+
+    private static CommandSpec createGovernorCommand() {
+        return CommandSpec.builder()
+                .description(Text.of("Shows the decisions of the tick governor"))
+                .permission(PERMISSION_PREFIX + "governor")
+                .executor((src, args) -> {
+                    src.sendMessage(Text.of(TextColors.GOLD, "Tick governor", TextColors.RESET,
+                            String.format(": %.2f TPS (mean %.2fms), pressure ", TickGovernor.getEstimatedTps(), TickGovernor.getMeanTickTime()),
+                            TickGovernor.getPressure().name()));
+                    for (TickedWorld ticked : VanillaDimensionManager.getTickedWorlds()) {
+                        src.sendMessage(Text.of("  ", TextColors.YELLOW, ticked.getWorld().getWorldInfo().getWorldName(), TextColors.RESET,
+                                ": policy ", ticked.getPolicy().name(), ", ticked every ", ticked.getTickDivisor(), " tick(s), ",
+                                ticked.getSkippedTicks(), " ticks skipped"));
+                    }
+                    return CommandResult.success();
+                })
+                .build();
+    }
+
+    private static CommandSpec createChunksCommand() {
+        return CommandSpec.builder()
+                .description(Text.of("Shows the loaded chunks, the chunk unload queue and the entity index of the loaded worlds"))
+                .permission(PERMISSION_PREFIX + "chunks")
+                .arguments(optional(world(Text.of("world"))))
+                .executor((src, args) -> {
+                    final Optional<WorldProperties> properties = args.getOne("world");
+                    for (TickedWorld ticked : VanillaDimensionManager.getTickedWorlds()) {
+                        if (!properties.isPresent() || matches(ticked, properties.get())) {
+                            final IMixinChunkProviderServer provider = (IMixinChunkProviderServer) ticked.getWorld().theChunkProviderServer;
+                            final ChunkUnloadMetrics metrics = provider.getUnloadMetrics();
+                            src.sendMessage(Text.of(TextColors.GOLD, ticked.getWorld().getWorldInfo().getWorldName(), TextColors.RESET,
+                                    ": ", provider.getLoadedChunks().size(), " loaded, ", provider.getUnloadQueueSize(), " queued for unload, ",
+                                    metrics.getLastUnloaded(), " unloaded in ", formatNanos(metrics.getLastTime()), " last tick, ",
+                                    metrics.getTotalUnloaded(), String.format(" unloaded in total (%.1f chunks/s)", metrics.getThroughput())));
+                            if (provider.getChunkLoader() instanceof IMixinAnvilChunkLoader) {
+                                final ChunkCache cache = ((IMixinAnvilChunkLoader) provider.getChunkLoader()).getChunkCache();
+                                if (cache.getHits() > 0 || cache.getMisses() > 0) {
+                                    src.sendMessage(Text.of("  ", cache.getCount(), " unloaded chunks cached (", cache.getSize() / 1024, " KiB), ",
+                                            String.format("%.1f%% hit rate, ", cache.getHitRate() * 100), cache.getEvictions(), " evicted"));
+                                }
+                            }
+                            final ChunkSaveQueue saveQueue = ((IMixinWorldServer) ticked.getWorld()).getChunkSaveQueue();
+                            if (saveQueue.size() > 0 || saveQueue.getTotalSaved() > 0) {
+                                src.sendMessage(Text.of("  ", saveQueue.size(), " queued for saving, ", saveQueue.getTotalSaved(),
+                                        " saved incrementally in total"));
+                            }
+                            final EntityIndex entityIndex = ((IMixinWorldServer) ticked.getWorld()).getEntityIndex();
+                            if (entityIndex.isEnabled()) {
+                                src.sendMessage(Text.of("  ", entityIndex.size(), " entities indexed in ", entityIndex.getCellCount(), " cells"));
+                            }
+                        }
+                    }
+                    return CommandResult.success();
+                })
+                .build();
+    }
+
+    private static CommandSpec createStorageCommand() {
+        return CommandSpec.builder()
+                .description(Text.of("Shows the statistics of the save writer and the compression of the saved chunks"))
+                .permission(PERMISSION_PREFIX + "storage")
+                .executor((src, args) -> {
+                    src.sendMessage(Text.of(TextColors.GOLD, "Save writer", TextColors.RESET, ": ", SaveWriter.getPendingCount(),
+                            " pending writes, ", SaveWriter.getCoalescedWrites(), " writes combined"));
+                    if (!MappedRegionFileCache.isEnabled()) {
+                        return CommandResult.success(); // The chunk codecs are only used by the mapped region storage
+                    }
+
+                    src.sendMessage(Text.of(TextColors.GOLD, "Chunk storage", TextColors.RESET, ": ", RegionMigrator.getMigratedChunks(),
+                            " chunks in ", RegionMigrator.getMigratedRegions(), " region files migrated"));
+                    for (ChunkCodec codec : ChunkCodec.values()) {
+                        final ChunkCodecStatistics statistics = ChunkCodecStatistics.get(codec);
+                        if (statistics.getChunks() > 0) {
+                            src.sendMessage(Text.of("  ", TextColors.YELLOW, codec.name(), TextColors.RESET, ": ", statistics.getChunks(),
+                                    " chunks, ", statistics.getUncompressedBytes() / 1024, " KiB to ", statistics.getCompressedBytes() / 1024,
+                                    " KiB in ", formatNanos(statistics.getTime())));
+                        }
+                    }
+                    return CommandResult.success();
+                })
+                .build();
+    }
+
+    private static CommandSpec createExplosionsCommand() {
+        return CommandSpec.builder()
+                .description(Text.of("Benchmarks the explosion engines at your position"))
+                .permission(PERMISSION_PREFIX + "explosions")
+                .child(CommandSpec.builder()
+                        .description(Text.of("Shows the light updates deferred by explosions"))
+                        .permission(PERMISSION_PREFIX + "explosions.light")
+                        .executor((src, args) -> {
+                            for (TickedWorld ticked : VanillaDimensionManager.getTickedWorlds()) {
+                                final LightUpdateBatch batch = ((IMixinWorldServer) ticked.getWorld()).getLightUpdateBatch();
+                                src.sendMessage(Text.of(TextColors.GOLD, ticked.getWorld().getWorldInfo().getWorldName(), TextColors.RESET, ": ",
+                                        batch.getRequested(), " light updates deferred, ", batch.getExecuted(), " run"));
+                            }
+                            return CommandResult.success();
+                        })
+                        .build(), "light")
+                .arguments(optional(doubleNum(Text.of("size"))), optional(integer(Text.of("iterations"))))
+                .executor(VanillaCommand::benchmarkExplosions)
+                .build();
+    }
+
+    private static CommandResult benchmarkExplosions(CommandSource src, CommandContext args) throws CommandException {
+        final Location<World> location;
+        if (src instanceof Locatable) {
+            location = ((Locatable) src).getLocation();
+        } else {
+            final Optional<WorldProperties> properties = Sponge.getServer().getDefaultWorld();
+            if (!properties.isPresent()) {
+                throw new CommandException(Text.of("The default world is not loaded"));
+            }
+            final WorldServer world = getLoadedWorld(properties.get());
+            location = ((World) world).getLocation(VecHelper.toVector(world.getSpawnPoint()));
+        }
+
+        final float size = args.<Double>getOne("size").orElse(4.0).floatValue();
+        final int iterations = args.<Integer>getOne("iterations").orElse(100);
+        if (size <= 0 || iterations <= 0) {
+            throw new CommandException(Text.of("The size and the iterations must be positive"));
+        }
+
+        final ExplosionBenchmark result = ExplosionBenchmark.run((net.minecraft.world.World) location.getExtent(), location.getX(),
+                location.getY(), location.getZ(), size, iterations);
+        if (result == null) {
+            throw new CommandException(Text.of("The explosion is too large or near unloaded chunks, it always uses the Vanilla engine"));
+        }
+
+        src.sendMessage(Text.of(TextColors.GOLD, "Explosion", TextColors.RESET, ": ", result.getBlocks(), " blocks, ",
+                result.isIdentical() ? Text.of(TextColors.GREEN, "identical to Vanilla") : Text.of(TextColors.RED, "differs from Vanilla")));
+        for (ExplosionEngine engine : ExplosionEngine.values()) {
+            src.sendMessage(Text.of("  ", TextColors.YELLOW, engine.name(), TextColors.RESET, ": ", formatNanos(result.getTime(engine)),
+                    String.format(" (%.2fx)", (double) result.getTime(ExplosionEngine.VANILLA) / result.getTime(engine))));
+        }
+        return CommandResult.success();
+    }
+
+    private static CommandSpec createWorldsCommand() {
+        return CommandSpec.builder()
+                .description(Text.of("Shows the worlds that are still loading their spawn area"))
+                .permission(PERMISSION_PREFIX + "worlds")
+                .child(CommandSpec.builder()
+                        .description(Text.of("Loads a world without blocking the server until its spawn area is loaded"))
+                        .permission(PERMISSION_PREFIX + "worlds.load")
+                        .arguments(world(Text.of("world")))
+                        .executor(VanillaCommand::loadWorld)
+                        .build(), "load")
+                .executor((src, args) -> {
+                    src.sendMessage(Text.of(TextColors.GOLD, "World loader", TextColors.RESET, ": ", AsyncWorldLoader.getLoadingCount(),
+                            " world(s) loading"));
+                    return CommandResult.success();
+                })
+                .build();
+    }
+
+    private static CommandResult loadWorld(CommandSource src, CommandContext args) throws CommandException {
+        final WorldProperties properties = args.<WorldProperties>getOne("world").get();
+        if (Sponge.getServer().getWorld(properties.getUniqueId()).isPresent()) {
+            throw new CommandException(Text.of(properties.getWorldName(), " is already loaded"));
+        }
+
+        src.sendMessage(Text.of("Loading ", properties.getWorldName(), "..."));
+        AsyncWorldLoader.loadWorld(properties).whenComplete((world, e) -> {
+            if (e != null) {
+                SpongeImpl.getLogger().error("Failed to load world {}", properties.getWorldName(), e);
+                src.sendMessage(Text.of(TextColors.RED, "Failed to load ", properties.getWorldName(), ": ", e));
+            } else if (world.isPresent()) {
+                src.sendMessage(Text.of(TextColors.GREEN, "Loaded ", properties.getWorldName()));
+            } else {
+                src.sendMessage(Text.of(TextColors.RED, properties.getWorldName(), " could not be loaded"));
+            }
+        });
+        return CommandResult.success();
+    }
+
+    private static CommandSpec createPregenCommand() {
+        return CommandSpec.builder()
+                .description(Text.of("Shows the progress of the chunk pre-generation"))
+                .permission(PERMISSION_PREFIX + "pregen")
+                .child(CommandSpec.builder()
+                        .description(Text.of("Pre-generates the chunks in a radius around a chunk, by default the spawn chunk"))
+                        .permission(PERMISSION_PREFIX + "pregen.start")
+                        .arguments(world(Text.of("world")), integer(Text.of("radius")),
+                                optional(seq(integer(Text.of("chunkX")), integer(Text.of("chunkZ")))))
+                        .executor(VanillaCommand::startPregen)
+                        .build(), "start")
+                .child(CommandSpec.builder()
+                        .description(Text.of("Stops the chunk pre-generation of a world"))
+                        .permission(PERMISSION_PREFIX + "pregen.stop")
+                        .arguments(world(Text.of("world")))
+                        .executor((src, args) -> {
+                            final WorldServer world = getLoadedWorld(args.<WorldProperties>getOne("world").get());
+                            if (ChunkPregenerator.stop(world)) {
+                                src.sendMessage(Text.of(TextColors.GREEN, "Stopped the pre-generation of ", world.getWorldInfo().getWorldName()));
+                            } else {
+                                src.sendMessage(Text.of(TextColors.RED, world.getWorldInfo().getWorldName(), " is not being pre-generated"));
+                            }
+                            return CommandResult.success();
+                        })
+                        .build(), "stop")
+                .executor((src, args) -> {
+                    if (ChunkPregenerator.getTasks().isEmpty()) {
+                        src.sendMessage(Text.of("No world is being pre-generated."));
+                    }
+                    for (PregenTask task : ChunkPregenerator.getTasks()) {
+                        final long eta = task.getEstimatedSecondsLeft();
+                        src.sendMessage(Text.of(TextColors.GOLD, task.getWorld().getWorldInfo().getWorldName(), TextColors.RESET,
+                                String.format(": %d/%d chunks (%.1f%%), %.1f chunks/s, ETA %s", task.getGenerated(), task.getTotal(),
+                                        task.getGenerated() * 100.0 / task.getTotal(), task.getChunksPerSecond(),
+                                        eta >= 0 ? String.format("%d:%02d:%02d", eta / 3600, eta / 60 % 60, eta % 60) : "unknown"),
+                                task.isThrottled() ? Text.of(TextColors.YELLOW, " (throttled)") : Text.EMPTY));
+                    }
+                    return CommandResult.success();
+                })
+                .build();
+    }
+
+    private static CommandResult startPregen(CommandSource src, CommandContext args) throws CommandException {
+        final WorldServer world = getLoadedWorld(args.<WorldProperties>getOne("world").get());
+        if (ChunkPregenerator.getTask(world).isPresent()) {
+            throw new CommandException(Text.of(world.getWorldInfo().getWorldName(), " is already being pre-generated"));
+        }
+
+        final int radius = args.<Integer>getOne("radius").get();
+        if (radius < 0) {
+            throw new CommandException(Text.of("The radius must not be negative"));
+        }
+
+        final BlockPos spawn = world.getSpawnPoint();
+        final int x = args.<Integer>getOne("chunkX").orElse(spawn.getX() >> 4);
+        final int z = args.<Integer>getOne("chunkZ").orElse(spawn.getZ() >> 4);
+
+        final PregenTask task = ChunkPregenerator.start(world, x, z, radius);
+        src.sendMessage(Text.of(TextColors.GREEN, "Pre-generating ", task.getTotal(), " chunks of ", world.getWorldInfo().getWorldName(),
+                " around chunk ", x, ", ", z));
+        return CommandResult.success();
+    }
+
+    private static WorldServer getLoadedWorld(WorldProperties properties) throws CommandException {
+        final Optional<World> world = Sponge.getServer().getWorld(properties.getUniqueId());
+        if (!world.isPresent()) {
+            throw new CommandException(Text.of(properties.getWorldName(), " is not loaded"));
+        }
+        return (WorldServer) world.get();
+    }
+
+    private static CommandResult showPhases(CommandSource src, CommandContext args) {
+        final Optional<WorldProperties> properties = args.getOne("world");
+        if (!properties.isPresent()) {
+            src.sendMessage(Text.of(TextColors.GOLD, "Server"));
+            sendPhases(src, PhaseProfiler.getServerTimings());
+
+            final ScheduledTaskQueue tasks = ((IMixinVanillaServer) Sponge.getServer()).getScheduledTaskQueue();
+            src.sendMessage(Text.of("  Scheduled tasks: ", tasks.size(), " queued, ", tasks.getLastExecuted(), " run in ",
+                    formatNanos(tasks.getLastDrainTime()), " (mean wait ", formatNanos(tasks.getLastMeanWaitTime()), ", max wait ",
+                    formatNanos(tasks.getLastMaxWaitTime()), ")"));
+        }
+
+        for (TickedWorld ticked : VanillaDimensionManager.getTickedWorlds()) {
+            if (!properties.isPresent() || matches(ticked, properties.get())) {
+                src.sendMessage(Text.of(TextColors.GOLD, ticked.getWorld().getWorldInfo().getWorldName()));
+                sendPhases(src, ticked.getTimings());
+            }
+        }
+
+        return CommandResult.success();
+    }
+
+    private static void sendPhases(CommandSource src, PhaseTimings timings) {
+        for (TickPhase phase : TickPhase.values()) {
+            final Optional<PhaseHistogram> result = timings.getHistogram(phase);
+            if (result.isPresent()) {
+                final PhaseHistogram histogram = result.get();
+                src.sendMessage(Text.of("  ", TextColors.YELLOW, phase.getName(), TextColors.RESET,
+                        String.format(": mean %s, p95 %s, p99 %s, max %s (%d samples)", formatNanos(histogram.getMean()),
+                                formatNanos(histogram.getPercentile(95)), formatNanos(histogram.getPercentile(99)),
+                                formatNanos(histogram.getMax()), histogram.getCount())));
+            }
+        }
+    }
+
+    private static boolean matches(TickedWorld ticked, WorldProperties properties) {
+        return ((World) ticked.getWorld()).getUniqueId().equals(properties.getUniqueId());
+    }
+
+    private static String formatNanos(long nanos) {
+        return String.format("%.2fms", nanos / 1000000.0);
+    }
+
+}
@@ -0,0 +1,429 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.config;
+
+import ninja.leaping.configurate.ConfigurationOptions;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
+import ninja.leaping.configurate.objectmapping.ObjectMapper;
+import ninja.leaping.configurate.objectmapping.ObjectMappingException;
+import ninja.leaping.configurate.objectmapping.Setting;
+import ninja.leaping.configurate.objectmapping.serialize.ConfigSerializable;
+import org.spongepowered.common.SpongeImpl;
+import org.spongepowered.server.tick.TickPolicy;
+import org.spongepowered.server.world.explosion.ExplosionEngine;
+import org.spongepowered.server.world.storage.ChunkCodec;
+import org.spongepowered.server.world.storage.RegionStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Implementation specific settings of SpongeVanilla that are not covered by
+ * the shared global configuration.
+ */
+@ConfigSerializable
+public class VanillaConfig {
+
+    private static final String HEADER = "SpongeVanilla implementation configuration.\n"
+            + "Most of these settings change how the server schedules its work. The defaults match the Vanilla behaviour.";
+
+    @Setting(value = "tick", comment = "Settings for the main server tick loop")
+    private TickCategory tick = new TickCategory();
+
+    @Setting(value = "world", comment = "Settings for loading and saving worlds")
+    private WorldCategory world = new WorldCategory();
+
+    @Setting(value = "governor", comment = "Settings for reducing the tick rate of low priority worlds under load")
+    private GovernorCategory governor = new GovernorCategory();
+
+    @Setting(value = "explosion", comment = "Settings for computing and applying explosions")
+    private ExplosionCategory explosion = new ExplosionCategory();
+
+    public TickCategory getTick() {
+        return this.tick;
+    }
+
+    public WorldCategory getWorld() {
+        return this.world;
+    }
+
+    public GovernorCategory getGovernor() {
+        return this.governor;
+    }
+
+    public ExplosionCategory getExplosion() {
+        return this.explosion;
+    }
+
+    public static VanillaConfig load(Path path) {
+        final HoconConfigurationLoader loader = HoconConfigurationLoader.builder().setPath(path).build();
+        try {
+            Files.createDirectories(path.getParent());
+
+            final CommentedConfigurationNode root = loader.load(ConfigurationOptions.defaults().setHeader(HEADER));
+            final ObjectMapper<VanillaConfig>.BoundInstance mapper = ObjectMapper.forClass(VanillaConfig.class).bindToNew();
+            final VanillaConfig config = mapper.populate(root);
+
+            // Write back to add new settings with their defaults
+            mapper.serialize(root);
+            loader.save(root);
+            return config;
+        } catch (IOException | ObjectMappingException e) {
+            SpongeImpl.getLogger().error("Failed to load SpongeVanilla configuration from {}, using defaults", path, e);
+            return new VanillaConfig();
+        }
+    }
+
+    @ConfigSerializable
+    public static class TickCategory {
+
+        @Setting(value = "parallel-world-ticking", comment = "EXPERIMENTAL: Tick independent worlds concurrently on a thread pool.\n"
+                + "Teleports between worlds, scoreboard updates and tasks scheduled from the world threads are deferred until all worlds\n"
+                + "have finished ticking. Chunk population is serialized between the worlds.\n"
+                + "Plugins that are not thread-safe may break when their listeners are called from multiple worlds at once.")
+        private boolean parallelWorldTicking = false;
+
+        @Setting(value = "world-tick-threads", comment = "The number of threads used to tick worlds in parallel, 0 to use one per CPU core")
+        private int worldTickThreads = 0;
+
+        @Setting(value = "tick-time-history", comment = "The number of tick times to keep for each world to calculate the tick time statistics")
+        private int tickTimeHistory = 1200;
+
+        @Setting(value = "scheduled-task-budget", comment = "The maximum time in milliseconds to spend each tick on tasks scheduled\n"
+                + "from other threads, e.g. by packet handlers or asynchronous plugin tasks.\n"
+                + "The remaining tasks are run in the next tick. 0 runs tasks until the queue is empty, like Vanilla.")
+        private long scheduledTaskBudget = 0;
+
+        @Setting(value = "watchdog-threshold", comment = "The time in milliseconds after which the main thread is sampled while a tick\n"
+                + "has not finished. The samples are written to logs/stalls as collapsed stacks for flame graph tools.\n"
+                + "0 disables the tick watchdog, 1000 is a good value to find what stalls the server.")
+        private long watchdogThreshold = 0;
+
+        @Setting(value = "watchdog-sample-interval", comment = "The interval in milliseconds between two samples of a stalled tick")
+        private long watchdogSampleInterval = 10;
+
+        @Setting(value = "watchdog-max-duration", comment = "The maximum time in milliseconds a single stalled tick is sampled")
+        private long watchdogMaxDuration = 60000;
+
+        public boolean isParallelWorldTicking() {
+            return this.parallelWorldTicking;
+        }
+
+        public int getWorldTickThreads() {
+            return this.worldTickThreads;
+        }
+
+        public long getScheduledTaskBudget() {
+            return this.scheduledTaskBudget;
+        }
+
+        public long getWatchdogThreshold() {
+            return this.watchdogThreshold;
+        }
+
+        public long getWatchdogSampleInterval() {
+            return this.watchdogSampleInterval;
+        }
+
+        public long getWatchdogMaxDuration() {
+            return this.watchdogMaxDuration;
+        }
+
+        public int getTickTimeHistory() {
+            return Math.max(this.tickTimeHistory, 100);
+        }
+
+    }
+
+    @ConfigSerializable
+    public static class WorldCategory {
+
+        @Setting(value = "unload-save-budget", comment = "The maximum time in milliseconds to spend each tick on saving the chunks\n"
+                + "of unloaded worlds. 0 saves all chunks of an unloaded world in a single tick, like Vanilla.")
+        private long unloadSaveBudget = 0;
+
+        @Setting(value = "leak-detection-delay", comment = "The time in seconds after which a world that is still in memory after it was\n"
+                + "unloaded is reported as leaked, e.g. 60. 0 disables the leak detection.")
+        private long leakDetectionDelay = 0;
+
+        @Setting(value = "async-chunk-loading", comment = "Read chunks that players walk into from the region files on separate threads.\n"
+                + "The chunks are added to the world on the main thread once they have been read.")
+        private boolean asyncChunkLoading = false;
+
+        @Setting(value = "chunk-io-threads", comment = "The number of threads used to read chunks if async-chunk-loading is enabled")
+        private int chunkIOThreads = 2;
+
+        @Setting(value = "chunk-unload-budget", comment = "The maximum time in milliseconds each world spends on unloading and saving\n"
+                + "queued chunks per tick, the chunks queued the longest are unloaded first.\n"
+                + "0 unloads up to 100 queued chunks per tick like Vanilla.")
+        private long chunkUnloadBudget = 0;
+
+        @Setting(value = "chunk-unload-low-watermark", comment = "Queued chunks are kept loaded while a world has this many chunks or less loaded")
+        private int chunkUnloadLowWatermark = 0;
+
+        @Setting(value = "chunk-unload-high-watermark", comment = "While a world has more chunks than this loaded, queued chunks are unloaded\n"
+                + "regardless of the chunk-unload-budget. 0 disables the high watermark.")
+        private int chunkUnloadHighWatermark = 0;
+
+        @Setting(value = "pregen-tick-budget", comment = "The maximum time in milliseconds spent on pre-generating chunks each tick")
+        private double pregenTickBudget = 10;
+
+        @Setting(value = "pregen-max-tick-time", comment = "Pre-generation only uses the time left until the mean tick time reaches\n"
+                + "this many milliseconds, it is paused while the server is busier")
+        private double pregenMaxTickTime = 45;
+
+        @Setting(value = "batched-chunk-events", comment = "Post a single BatchedChunkEvent per world and tick for all loaded or unloaded\n"
+                + "chunks instead of a LoadChunkEvent or UnloadChunkEvent for each chunk.\n"
+                + "Only enable this if all plugins that need chunk events support the batched events.")
+        private boolean batchedChunkEvents = false;
+
+        @Setting(value = "region-storage", comment = "The implementation used to read and write region files, the file format is the same.\n"
+                + "VANILLA: The Vanilla implementation using RandomAccessFile,\n"
+                + "MAPPED: Reads from memory mapped files and writes the saved chunks of a region file in batches.\n"
+                + "Changes require a restart.")
+        private RegionStorage regionStorage = RegionStorage.VANILLA;
+
+        @Setting(value = "chunk-codec", comment = "The compression of saved chunks if region-storage is MAPPED.\n"
+                + "ZLIB: The Vanilla compression, GZIP: Also supported by Vanilla, but slower to read,\n"
+                + "NONE: No compression, faster but uses more disk space. Only used with allow-incompatible-chunk-codec.\n"
+                + "Chunks saved with NONE can't be read by Vanilla servers. SpongeVanilla reads them with both region storages and\n"
+                + "compresses them with ZLIB again when they are saved with the VANILLA region storage.")
+        private ChunkCodec chunkCodec = ChunkCodec.ZLIB;
+
+        @Setting(value = "allow-incompatible-chunk-codec", comment = "Allow the NONE chunk-codec. Vanilla servers and other tools regenerate\n"
+                + "the chunks saved with it, so the worlds can't be used without SpongeVanilla anymore. Otherwise ZLIB is used instead.")
+        private boolean allowIncompatibleChunkCodec = false;
+
+        @Setting(value = "chunk-compression-level", comment = "The ZLIB and GZIP compression level from 1 (fastest) to 9 (smallest),\n"
+                + "-1 for the default")
+        private int chunkCompressionLevel = -1;
+
+        @Setting(value = "chunk-migration", comment = "Compress the chunks of region files that were not modified for a while again\n"
+                + "with the configured chunk-codec in the background. Only used if region-storage is MAPPED.")
+        private boolean chunkMigration = false;
+
+        @Setting(value = "chunk-migration-cold-time", comment = "The time in minutes a region file must not be modified before it is migrated")
+        private long chunkMigrationColdTime = 10;
+
+        @Setting(value = "incremental-save", comment = "Save the modified chunks spread over multiple ticks instead of saving all chunks\n"
+                + "during the autosave. The world info and player data are written on a separate thread.")
+        private boolean incrementalSave = false;
+
+        @Setting(value = "chunk-save-interval", comment = "The maximum time in seconds a modified chunk stays unsaved with incremental-save.\n"
+                + "Chunks that are only unsaved because of moving entities are queued during the autosave (every 45 seconds).")
+        private long chunkSaveInterval = 45;
+
+        @Setting(value = "chunk-save-budget", comment = "The time in milliseconds per tick and world to save more chunks than required\n"
+                + "to keep the chunk-save-interval")
+        private double chunkSaveBudget = 1;
+
+        @Setting(value = "async-player-data", comment = "Write the player data on a separate thread when it is saved on the main thread,\n"
+                + "e.g. when players log out. Repeated saves of the same player are combined into a single write.")
+        private boolean asyncPlayerData = false;
+
+        @Setting(value = "world-load-tick-budget", comment = "The time in milliseconds per tick to load the spawn area of worlds\n"
+                + "loaded with AsyncWorldLoader or /sv worlds load. Enable async-chunk-loading to read the chunks on separate threads.")
+        private double worldLoadTickBudget = 10;
+
+        @Setting(value = "chunk-cache-size", comment = "The memory in megabytes per world to keep the compressed data of recently unloaded\n"
+                + "chunks, so they don't need to be read from the region files when they are loaded again. 0 to disable.")
+        private long chunkCacheSize = 0;
+
+        @Setting(value = "entity-index", comment = "Index the entities of each world in cells of 8x8x8 blocks to answer the entity queries\n"
+                + "of explosions, collisions and AI without scanning the entities of whole chunk sections. Helps with thousands of\n"
+                + "entities in a chunk, e.g. in mob farms. Takes effect for worlds loaded after the change.")
+        private boolean entityIndex = false;
+
+        public long getUnloadSaveBudget() {
+            return this.unloadSaveBudget;
+        }
+
+        public long getLeakDetectionDelay() {
+            return this.leakDetectionDelay;
+        }
+
+        public boolean isAsyncChunkLoading() {
+            return this.asyncChunkLoading;
+        }
+
+        public int getChunkIOThreads() {
+            return this.chunkIOThreads;
+        }
+
+        public long getChunkUnloadBudget() {
+            return this.chunkUnloadBudget;
+        }
+
+        public int getChunkUnloadLowWatermark() {
+            return this.chunkUnloadLowWatermark;
+        }
+
+        public int getChunkUnloadHighWatermark() {
+            return this.chunkUnloadHighWatermark;
+        }
+
+        public double getPregenTickBudget() {
+            return this.pregenTickBudget;
+        }
+
+        public double getPregenMaxTickTime() {
+            return this.pregenMaxTickTime;
+        }
+
+        public boolean isBatchedChunkEvents() {
+            return this.batchedChunkEvents;
+        }
+
+        public RegionStorage getRegionStorage() {
+            return this.regionStorage;
+        }
+
+        public ChunkCodec getChunkCodec() {
+            return this.chunkCodec;
+        }
+
+        public int getChunkCompressionLevel() {
+            return this.chunkCompressionLevel >= 1 && this.chunkCompressionLevel <= 9 ? this.chunkCompressionLevel : -1;
+        }
+
+        public boolean isAllowIncompatibleChunkCodec() {
+            return this.allowIncompatibleChunkCodec;
+        }
+
+        public boolean isChunkMigration() {
+            return this.chunkMigration;
+        }
+
+        public long getChunkMigrationColdTime() {
+            return this.chunkMigrationColdTime;
+        }
+
+        public boolean isIncrementalSave() {
+            return this.incrementalSave;
+        }
+
+        public long getChunkSaveInterval() {
+            return this.chunkSaveInterval;
+        }
+
+        public double getChunkSaveBudget() {
+            return this.chunkSaveBudget;
+        }
+
+        public boolean isAsyncPlayerData() {
+            return this.asyncPlayerData;
+        }
+
+        public double getWorldLoadTickBudget() {
+            return this.worldLoadTickBudget;
+        }
+
+        public long getChunkCacheSize() {
+            return this.chunkCacheSize;
+        }
+
+        public boolean isEntityIndex() {
+            return this.entityIndex;
+        }
+
+    }
+
+    @ConfigSerializable
+    public static class GovernorCategory {
+
+        @Setting(value = "enabled", comment = "Tick low priority worlds at a reduced rate while the server can't keep up")
+        private boolean enabled = false;
+
+        @Setting(value = "moderate-tps", comment = "Below this estimated TPS, low priority worlds are ticked every 2nd tick")
+        private double moderateTps = 19;
+
+        @Setting(value = "high-tps", comment = "Below this estimated TPS, low priority worlds are ticked every 4th tick")
+        private double highTps = 15;
+
+        @Setting(value = "default-policy", comment = "The tick policy of worlds without an entry in world-policies.\n"
+                + "FULL: Always tick at full rate, NORMAL: Reduce the rate while no players are in the world,\n"
+                + "LOW: Reduce the rate even if players are in the world")
+        private TickPolicy defaultPolicy = TickPolicy.NORMAL;
+
+        @Setting(value = "world-policies", comment = "The tick policies of specific worlds, by world name")
+        private Map<String, TickPolicy> worldPolicies = new HashMap<>();
+
+        public boolean isEnabled() {
+            return this.enabled;
+        }
+
+        public double getModerateTps() {
+            return this.moderateTps;
+        }
+
+        public double getHighTps() {
+            return this.highTps;
+        }
+
+        public TickPolicy getPolicy(String worldName) {
+            final TickPolicy policy = this.worldPolicies.get(worldName);
+            return policy != null ? policy : this.defaultPolicy;
+        }
+
+    }
+
+    @ConfigSerializable
+    public static class ExplosionCategory {
+
+        @Setting(value = "merge-tnt-explosions", comment = "Merge the explosions of primed TNT with identical origin and strength in the same tick\n"
+                + "into a single explosion with multiplied knockback. The merged explosions run after all entities of the world were updated,\n"
+                + "blocks are destroyed only once.")
+        private boolean mergeTntExplosions = false;
+
+        @Setting(value = "engine", comment = "The implementation used to collect the blocks destroyed by explosions:\n"
+                + "VANILLA - Look up the blocks on every ray\n"
+                + "CACHED - Look up the explosion resistance of each block only once\n"
+                + "PARALLEL - Like CACHED, but cast the rays on multiple threads\n"
+                + "All of them destroy the same blocks. Large explosions or explosions near unloaded chunks always use VANILLA.")
+        private ExplosionEngine engine = ExplosionEngine.VANILLA;
+
+        @Setting(value = "defer-light-updates", comment = "Update the light of the blocks changed by an explosion once all blocks were changed,\n"
+                + "instead of after each block. The light is spread only once through the destroyed area.")
+        private boolean deferLightUpdates = false;
+
+        public boolean isMergeTntExplosions() {
+            return this.mergeTntExplosions;
+        }
+
+        public ExplosionEngine getEngine() {
+            return this.engine;
+        }
+
+        public boolean isDeferLightUpdates() {
+            return this.deferLightUpdates;
+        }
+
+    }
+
+}
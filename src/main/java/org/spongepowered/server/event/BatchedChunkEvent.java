@@ -0,0 +1,94 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.event;
+
+import com.google.common.collect.ImmutableList;
+import org.spongepowered.api.event.Event;
+import org.spongepowered.api.event.cause.Cause;
+import org.spongepowered.api.world.Chunk;
+import org.spongepowered.api.world.World;
+
+import java.util.List;
+
+/**
+ * Posted once per world and tick for all chunks that were loaded or unloaded
+ * in that tick, instead of a {@link org.spongepowered.api.event.world.chunk.LoadChunkEvent}
+ * or {@link org.spongepowered.api.event.world.chunk.UnloadChunkEvent} per
+ * chunk. Only used if batched chunk events are enabled in the SpongeVanilla
+ * configuration.
+ */
+public abstract class BatchedChunkEvent implements Event {
+
+    private final Cause cause;
+    private final World world;
+    private final List<Chunk> chunks;
+
+    BatchedChunkEvent(Cause cause, World world, List<Chunk> chunks) {
+        this.cause = cause;
+        this.world = world;
+        this.chunks = ImmutableList.copyOf(chunks);
+    }
+
+    @Override
+    public Cause getCause() {
+        return this.cause;
+    }
+
+    public World getTargetWorld() {
+        return this.world;
+    }
+
+    /**
+     * Returns the chunks in the order they were loaded or unloaded.
+     *
+     * @return The chunks
+     */
+    public List<Chunk> getChunks() {
+        return this.chunks;
+    }
+
+    /**
+     * Posted for the chunks that were loaded in a tick.
+     */
+    public static final class Load extends BatchedChunkEvent {
+
+        public Load(Cause cause, World world, List<Chunk> chunks) {
+            super(cause, world, chunks);
+        }
+
+    }
+
+    /**
+     * Posted for the chunks that were unloaded in a tick.
+     */
+    public static final class Unload extends BatchedChunkEvent {
+
+        public Unload(Cause cause, World world, List<Chunk> chunks) {
+            super(cause, world, chunks);
+        }
+
+    }
+
+}
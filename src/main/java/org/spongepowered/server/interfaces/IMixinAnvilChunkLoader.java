@@ -0,0 +1,79 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.interfaces;
+
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import org.spongepowered.server.world.storage.ChunkCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+import javax.annotation.Nullable;
+
+public interface IMixinAnvilChunkLoader {
+
+    File getChunkSaveLocation();
+
+    ChunkCache getChunkCache();
+
+    /**
+     * Returns a future that is completed on the file I/O thread once all
+     * chunks of this loader that are queued or being written have been
+     * written.
+     *
+     * @return The future for the pending writes
+     */
+    CompletableFuture<Void> getPendingWrites();
+
+    /**
+     * Reads and decompresses the NBT data of a chunk from the pending saves
+     * or the region file. This may be called from any thread.
+     *
+     * @param x The chunk X coordinate
+     * @param z The chunk Z coordinate
+     * @return The chunk data, or null if the chunk was not generated yet
+     * @throws IOException If the region file could not be read
+     */
+    @Nullable
+    NBTTagCompound readChunkData(int x, int z) throws IOException;
+
+    /**
+     * Creates the chunk from data read by {@link #readChunkData(int, int)}.
+     * This must be called from the main thread because it also loads the
+     * entities and tile entities of the chunk.
+     *
+     * @param world The world of the chunk
+     * @param x The chunk X coordinate
+     * @param z The chunk Z coordinate
+     * @param compound The chunk data
+     * @return The chunk, or null if the data is invalid
+     */
+    @Nullable
+    Chunk readChunk(World world, int x, int z, NBTTagCompound compound);
+
+}
@@ -0,0 +1,93 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.interfaces;
+
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.IChunkLoader;
+import org.spongepowered.server.world.ChunkUnloadMetrics;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import javax.annotation.Nullable;
+
+public interface IMixinChunkProviderServer {
+
+    List<Chunk> getLoadedChunks();
+
+    @Nullable
+    IChunkLoader getChunkLoader();
+
+    /**
+     * Saves a single chunk if it was modified, like
+     * {@link net.minecraft.world.gen.ChunkProviderServer#saveChunks} does
+     * for all chunks.
+     *
+     * @param chunk The chunk to save
+     * @return True if the chunk was saved
+     */
+    boolean saveChunk(Chunk chunk);
+
+    /**
+     * Loads a chunk without blocking the main thread for reading the region
+     * file. The chunk is added to the world in a later tick on the main
+     * thread, chunks closer to players are read first. Loading the chunk
+     * with {@link net.minecraft.world.gen.ChunkProviderServer#loadChunk(int, int)}
+     * in the meantime waits for the pending read.
+     *
+     * <p>Must be called from the main thread. If asynchronous chunk loading
+     * is disabled, the chunk is loaded immediately.</p>
+     *
+     * @param x The chunk X coordinate
+     * @param z The chunk Z coordinate
+     * @param playerDriven Whether the chunk is only loaded because a player
+     *     came close to it, these loads are discarded if the chunk was
+     *     queued for unloading in the meantime
+     * @return The future that is completed on the main thread once the chunk
+     *     is loaded
+     */
+    CompletableFuture<Chunk> loadChunkAsync(int x, int z, boolean playerDriven);
+
+    /**
+     * Reads a chunk on the chunk I/O threads, but does not add it to the
+     * world. The chunk is only added once it is loaded with
+     * {@link net.minecraft.world.gen.ChunkProviderServer#loadChunk(int, int)},
+     * which then does not need to read the region file anymore.
+     *
+     * <p>Must be called from the main thread. If asynchronous chunk loading
+     * is disabled, the returned future is already completed and the chunk
+     * is read when it is loaded.</p>
+     *
+     * @param x The chunk X coordinate
+     * @param z The chunk Z coordinate
+     * @return The future that is completed once the chunk was read
+     */
+    CompletableFuture<?> readChunkAsync(int x, int z);
+
+    int getUnloadQueueSize();
+
+    ChunkUnloadMetrics getUnloadMetrics();
+
+}
@@ -0,0 +1,60 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.interfaces;
+
+import net.minecraft.world.MinecraftException;
+import org.spongepowered.server.world.ChunkEventBatch;
+import org.spongepowered.server.world.ChunkSaveQueue;
+import org.spongepowered.server.world.EntityIndex;
+import org.spongepowered.server.world.explosion.ExplosionMerger;
+import org.spongepowered.server.world.explosion.LightUpdateBatch;
+
+public interface IMixinWorldServer {
+
+    /**
+     * Saves the world info (level.dat) and the map storage of the world,
+     * but no chunks.
+     *
+     * @throws MinecraftException If the session lock was lost
+     */
+    void saveLevelData() throws MinecraftException;
+
+    ChunkEventBatch getChunkEventBatch();
+
+    ChunkSaveQueue getChunkSaveQueue();
+
+    ExplosionMerger getExplosionMerger();
+
+    LightUpdateBatch getLightUpdateBatch();
+
+    /**
+     * Returns the spatial index of the entities in the world. Implementations
+     * of entity queries should use it if it is enabled.
+     *
+     * @return The entity index
+     */
+    EntityIndex getEntityIndex();
+
+}
@@ -0,0 +1,62 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.mixin.block;
+
+import com.google.common.collect.Sets;
+import net.minecraft.block.BlockRedstoneWire;
+import net.minecraft.util.BlockPos;
+import org.spongepowered.asm.lib.Opcodes;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Redirect;
+
+import java.util.Set;
+
+@Mixin(BlockRedstoneWire.class)
+public abstract class MixinBlockRedstoneWire {
+
+    // The flag and the set of blocks to update are shared by all worlds, so each world tick thread gets its own
+    private static final ThreadLocal<Boolean> threadCanProvidePower = ThreadLocal.withInitial(() -> true);
+    private static final ThreadLocal<Set<BlockPos>> threadBlocksNeedingUpdate = ThreadLocal.withInitial(Sets::newHashSet);
+
+    @Redirect(method = "calculateCurrentChanges", at = @At(value = "FIELD",
+            target = "Lnet/minecraft/block/BlockRedstoneWire;canProvidePower:Z", opcode = Opcodes.PUTFIELD))
+    private void onSetCanProvidePower(BlockRedstoneWire wire, boolean canProvidePower) {
+        threadCanProvidePower.set(canProvidePower);
+    }
+
+    @Redirect(method = {"isProvidingStrongPower", "isProvidingWeakPower", "canProvidePower"}, at = @At(value = "FIELD",
+            target = "Lnet/minecraft/block/BlockRedstoneWire;canProvidePower:Z", opcode = Opcodes.GETFIELD))
+    private boolean onGetCanProvidePower(BlockRedstoneWire wire) {
+        return threadCanProvidePower.get();
+    }
+
+    @Redirect(method = {"updateSurroundingRedstone", "calculateCurrentChanges"}, at = @At(value = "FIELD",
+            target = "Lnet/minecraft/block/BlockRedstoneWire;blocksNeedingUpdate:Ljava/util/Set;", opcode = Opcodes.GETFIELD))
+    private Set<BlockPos> onGetBlocksNeedingUpdate(BlockRedstoneWire wire) {
+        return threadBlocksNeedingUpdate.get();
+    }
+
+}
@@ -26,23 +26,29 @@
 
 import net.minecraft.entity.Entity;
 import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.AxisAlignedBB;
 import net.minecraft.world.World;
 import org.spongepowered.api.event.SpongeEventFactory;
 import org.spongepowered.api.event.cause.Cause;
 import org.spongepowered.api.event.cause.NamedCause;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import org.spongepowered.common.SpongeImpl;
 import org.spongepowered.common.entity.EntityDummy;
 import org.spongepowered.common.interfaces.entity.IMixinEntity;
+import org.spongepowered.server.interfaces.IMixinWorldServer;
+import org.spongepowered.server.tick.ParallelWorldTicker;
 
 import javax.annotation.Nullable;
 
 @Mixin(Entity.class)
 public abstract class MixinEntity implements IMixinEntity {
 
+    @Shadow public World worldObj;
+
     @Nullable private NBTTagCompound customEntityData;
 
     @Inject(method = "<init>(Lnet/minecraft/world/World;)V", at = @At("RETURN"), remap = false)
@@ -53,6 +59,21 @@ private void onConstructed(World world, CallbackInfo ci) {
         }
     }
 
+    @Inject(method = "setEntityBoundingBox", at = @At("RETURN"))
+    private void onSetEntityBoundingBox(AxisAlignedBB box, CallbackInfo ci) {
+        if (this.worldObj instanceof IMixinWorldServer) {
+            ((IMixinWorldServer) this.worldObj).getEntityIndex().update((Entity) (Object) this);
+        }
+    }
+
+    // Changing the world of an entity affects two worlds, so it can't be done while the worlds are ticked in parallel
+    @Inject(method = "travelToDimension", at = @At("HEAD"), cancellable = true)
+    private void deferTravelToDimension(int dimensionId, CallbackInfo ci) {
+        if (ParallelWorldTicker.defer(() -> ((Entity) (Object) this).travelToDimension(dimensionId))) {
+            ci.cancel();
+        }
+    }
+
     @Override
     public final NBTTagCompound getEntityData() {
         if (this.customEntityData == null) {
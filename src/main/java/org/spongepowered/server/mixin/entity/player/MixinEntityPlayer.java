@@ -64,6 +64,7 @@
 import org.spongepowered.common.interfaces.entity.player.IMixinEntityPlayer;
 import org.spongepowered.common.mixin.core.entity.MixinEntityLivingBase;
 import org.spongepowered.common.util.VecHelper;
+import org.spongepowered.server.tick.ParallelWorldTicker;
 
 import java.util.Optional;
 
@@ -117,6 +118,14 @@ public boolean isSpawnForced(int dimension) {
         return dimension == 0 ? this.spawnForced : this.spawnForcedSet.contains(dimension);
     }
 
+    @Inject(method = "addToPlayerScore", at = @At("HEAD"), cancellable = true)
+    private void deferAddToPlayerScore(net.minecraft.entity.Entity entity, int amount, CallbackInfo ci) {
+        // The scoreboard is shared by all worlds
+        if (ParallelWorldTicker.defer(() -> ((EntityPlayer) (Object) this).addToPlayerScore(entity, amount))) {
+            ci.cancel();
+        }
+    }
+
     @Inject(method = "setSpawnPoint", at = @At("HEAD"), cancellable = true)
     private void onSetSpawnPoint(BlockPos pos, boolean forced, CallbackInfo ci) {
         if (this.dimension != 0) {
@@ -25,12 +25,21 @@
 package org.spongepowered.server.mixin.entity.player;
 
 import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.scoreboard.IScoreObjectiveCriteria;
+import net.minecraft.scoreboard.ScoreObjective;
+import net.minecraft.scoreboard.Scoreboard;
+import net.minecraft.stats.StatBase;
 import net.minecraft.util.DamageSource;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.Redirect;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import org.spongepowered.server.mixin.entity.MixinEntityLivingBase;
+import org.spongepowered.server.tick.ParallelWorldTicker;
+
+import java.util.Collection;
+import java.util.Collections;
 
 @Mixin(EntityPlayerMP.class)
 public abstract class MixinEntityPlayerMP extends MixinEntityLivingBase {
@@ -40,4 +49,43 @@ private void callDestructEntityPlayerMP(DamageSource source, CallbackInfo ci) {
         callDestructEntityEventDeath(source, ci);
     }
 
+    @Redirect(method = "onDeath", at = @At(value = "INVOKE",
+            target = "Lnet/minecraft/scoreboard/Scoreboard;getObjectivesFromCriteria(Lnet/minecraft/scoreboard/IScoreObjectiveCriteria;)"
+                    + "Ljava/util/Collection;"))
+    private Collection<ScoreObjective> onGetDeathCountObjectives(Scoreboard scoreboard, IScoreObjectiveCriteria criteria) {
+        // Looking up the scores of the player adds them to the scoreboard shared by all worlds
+        final EntityPlayerMP player = (EntityPlayerMP) (Object) this;
+        if (ParallelWorldTicker.defer(() -> {
+            for (ScoreObjective objective : scoreboard.getObjectivesFromCriteria(criteria)) {
+                player.getWorldScoreboard().getValueFromObjective(player.getName(), objective).func_96648_a();
+            }
+        })) {
+            return Collections.emptyList();
+        }
+        return scoreboard.getObjectivesFromCriteria(criteria);
+    }
+
+    @Inject(method = "addStat", at = @At("HEAD"), cancellable = true)
+    private void deferAddStat(StatBase stat, int amount, CallbackInfo ci) {
+        // Statistics are also scoreboard criteria
+        if (ParallelWorldTicker.defer(() -> ((EntityPlayerMP) (Object) this).addStat(stat, amount))) {
+            ci.cancel();
+        }
+    }
+
+    @Inject(method = "func_175145_a", at = @At("HEAD"), cancellable = true)
+    private void deferResetStat(StatBase stat, CallbackInfo ci) {
+        // Resetting a statistic resets its scoreboard criteria
+        if (ParallelWorldTicker.defer(() -> ((EntityPlayerMP) (Object) this).func_175145_a(stat))) {
+            ci.cancel();
+        }
+    }
+
+    @Inject(method = "travelToDimension", at = @At("HEAD"), cancellable = true)
+    private void deferPlayerTravelToDimension(int dimensionId, CallbackInfo ci) {
+        if (ParallelWorldTicker.defer(() -> ((EntityPlayerMP) (Object) this).travelToDimension(dimensionId))) {
+            ci.cancel();
+        }
+    }
+
 }
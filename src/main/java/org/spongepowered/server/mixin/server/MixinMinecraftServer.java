@@ -24,18 +24,22 @@
  */
 package org.spongepowered.server.mixin.server;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
 import net.minecraft.crash.CrashReport;
 import net.minecraft.network.NetworkSystem;
 import net.minecraft.network.ServerStatusResponse;
-import net.minecraft.network.play.server.S03PacketTimeUpdate;
 import net.minecraft.profiler.Profiler;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.management.ServerConfigurationManager;
 import net.minecraft.util.IChatComponent;
 import net.minecraft.util.ITickable;
 import net.minecraft.util.ReportedException;
-import net.minecraft.util.Util;
+import net.minecraft.world.MinecraftException;
 import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.Chunk;
+import org.apache.commons.lang3.Validate;
 import org.apache.logging.log4j.Logger;
 import org.spongepowered.api.event.SpongeEventFactory;
 import org.spongepowered.api.event.cause.Cause;
@@ -47,34 +51,65 @@
 import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.Redirect;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import org.spongepowered.asm.mixin.injection.callback.LocalCapture;
 import org.spongepowered.common.SpongeImpl;
 import org.spongepowered.common.interfaces.IMixinMinecraftServer;
 import org.spongepowered.common.text.SpongeTexts;
 import org.spongepowered.server.SpongeVanilla;
+import org.spongepowered.server.config.VanillaConfig;
+import org.spongepowered.server.interfaces.IMixinChunkProviderServer;
+import org.spongepowered.server.interfaces.IMixinVanillaServer;
+import org.spongepowered.server.interfaces.IMixinWorldServer;
+import org.spongepowered.server.tick.ParallelWorldTicker;
+import org.spongepowered.server.tick.PhaseProfiler;
+import org.spongepowered.server.tick.PhaseTimings;
+import org.spongepowered.server.tick.ScheduledTaskQueue;
+import org.spongepowered.server.tick.TickGovernor;
+import org.spongepowered.server.tick.TickPhase;
+import org.spongepowered.server.tick.TickWatchdog;
+import org.spongepowered.server.tick.WorldTickTimes;
+import org.spongepowered.server.world.AsyncWorldLoader;
+import org.spongepowered.server.world.ChunkPregenerator;
+import org.spongepowered.server.world.ChunkSaveQueue;
+import org.spongepowered.server.world.TickedWorld;
+import org.spongepowered.server.world.TimeSynchronizer;
 import org.spongepowered.server.world.VanillaDimensionManager;
+import org.spongepowered.server.world.storage.SaveWriter;
 
+import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.FutureTask;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
 
 @Mixin(MinecraftServer.class)
-public abstract class MixinMinecraftServer implements IMixinMinecraftServer {
+public abstract class MixinMinecraftServer implements IMixinMinecraftServer, IMixinVanillaServer {
 
     @Shadow @Final private static Logger logger;
     @Shadow @Final private List<ITickable> playersOnline;
     @Shadow @Final public Profiler theProfiler;
     @Shadow private ServerConfigurationManager serverConfigManager;
     @Shadow private int tickCounter;
-    @Shadow @Final protected Queue<FutureTask<?>> futureTaskQueue;
+    @Shadow private boolean worldIsBeingDeleted;
 
     @Shadow public abstract boolean getAllowNether();
     @Shadow public abstract NetworkSystem getNetworkSystem();
+    @Shadow public abstract boolean isCallingFromMinecraftThread();
+    @Shadow public abstract boolean isServerStopped();
+    @Shadow protected abstract void saveAllWorlds(boolean dontLog);
 
     private boolean skipServerStop;
     private final Hashtable<Integer, long[]> worldTickTimes = new Hashtable<>();
+    @Nullable private ParallelWorldTicker worldTicker;
+    @Nullable private TickWatchdog watchdog;
+    private long tickStart;
+    private final TimeSynchronizer timeSynchronizer = new TimeSynchronizer();
+    private final List<TickedWorld> parallelWorlds = new ArrayList<>();
+    private final ScheduledTaskQueue scheduledTasks = new ScheduledTaskQueue();
 
     /**
      * @author Minecrell
@@ -95,11 +130,44 @@ public void addChatMessage(IChatComponent component) {
         logger.info(SpongeTexts.toLegacy(component));
     }
 
+    /**
+     * Only kept for compatibility, the tick times are recorded in
+     * {@link WorldTickTimes}. The arrays in this map are updated along
+     * with the ring buffers, but the map itself is only modified when worlds
+     * are loaded or unloaded.
+     */
     @Override
     public Hashtable<Integer, long[]> getWorldTickTimes() {
         return this.worldTickTimes;
     }
 
+    @Override
+    public ScheduledTaskQueue getScheduledTaskQueue() {
+        return this.scheduledTasks;
+    }
+
+    /**
+     * @author SpongePowered
+     * @reason Add tasks to a lock-free queue instead of synchronizing on the
+     *     task queue, which is also locked while the tasks are run
+     */
+    @Overwrite
+    public <V> ListenableFuture<V> callFromMainThread(Callable<V> callable) {
+        Validate.notNull(callable);
+
+        if (!this.isCallingFromMinecraftThread() && !this.isServerStopped()) {
+            ListenableFutureTask<V> task = ListenableFutureTask.create(callable);
+            this.scheduledTasks.add(task);
+            return task;
+        } else {
+            try {
+                return Futures.immediateFuture(callable.call());
+            } catch (Exception e) {
+                return Futures.immediateFailedCheckedFuture(e);
+            }
+        }
+    }
+
     @Inject(method = "stopServer()V", at = @At("HEAD"), cancellable = true)
     private void preventDoubleStop(CallbackInfo ci) {
         if (this.skipServerStop) {
@@ -114,6 +182,24 @@ private void preventDoubleStop(CallbackInfo ci) {
             shift = At.Shift.AFTER, remap = false))
     private void callServerStopping(CallbackInfo ci) {
         SpongeVanilla.INSTANCE.onServerStopping();
+
+        // Save worlds that were unloaded, but not saved completely yet
+        VanillaDimensionManager.finishUnloading();
+        ChunkPregenerator.saveCheckpoints();
+
+        if (this.worldTicker != null) {
+            this.worldTicker.shutdown();
+            this.worldTicker = null;
+        }
+        if (this.watchdog != null) {
+            this.watchdog.shutdown();
+            this.watchdog = null;
+        }
+    }
+
+    @Inject(method = "stopServer", at = @At("RETURN"))
+    private void onServerStopped(CallbackInfo ci) {
+        SaveWriter.shutdown();
     }
 
     @Inject(method = "addFaviconToStatusResponse", at = @At("HEAD"), cancellable = true)
@@ -130,89 +216,298 @@ private void callWorldUnload(CallbackInfo ci, int i, WorldServer worldserver) {
         SpongeImpl.postEvent(SpongeEventFactory.createUnloadWorldEvent(Cause.of(NamedCause.source(this)), (World) worldserver));
     }
 
+    @Inject(method = "tick", at = @At("HEAD"))
+    private void onTickStart(CallbackInfo ci) {
+        this.tickStart = System.nanoTime();
+
+        if (this.watchdog == null) {
+            final VanillaConfig.TickCategory config = SpongeVanilla.INSTANCE.getConfig().getTick();
+            if (config.getWatchdogThreshold() <= 0) {
+                return;
+            }
+            this.watchdog = new TickWatchdog(Thread.currentThread(), config.getWatchdogThreshold(), config.getWatchdogSampleInterval(),
+                    config.getWatchdogMaxDuration());
+        }
+        this.watchdog.startTick();
+    }
+
+    @Inject(method = "tick", at = @At("RETURN"))
+    private void onTickEnd(CallbackInfo ci) {
+        TickGovernor.recordTick(System.nanoTime() - this.tickStart);
+        if (this.watchdog != null) {
+            this.watchdog.endTick();
+        }
+    }
+
+    @Redirect(method = "tick", at = @At(value = "INVOKE",
+            target = "Lnet/minecraft/server/management/ServerConfigurationManager;saveAllPlayerData()V"))
+    private void onAutosavePlayers(ServerConfigurationManager manager) {
+        if (SpongeVanilla.INSTANCE.getConfig().getWorld().isIncrementalSave()) {
+            SaveWriter.defer(manager::saveAllPlayerData);
+        } else {
+            manager.saveAllPlayerData();
+        }
+    }
+
+    @Redirect(method = "tick", at = @At(value = "INVOKE", target = "Lnet/minecraft/server/MinecraftServer;saveAllWorlds(Z)V"))
+    private void onAutosaveWorlds(MinecraftServer server, boolean dontLog) {
+        if (!SpongeVanilla.INSTANCE.getConfig().getWorld().isIncrementalSave()) {
+            this.saveAllWorlds(dontLog);
+            return;
+        }
+
+        if (this.worldIsBeingDeleted) {
+            return;
+        }
+
+        // The chunks are saved incrementally, only write the world info and queue the chunks of moving entities
+        for (TickedWorld ticked : VanillaDimensionManager.getTickedWorlds()) {
+            final WorldServer worldserver = ticked.getWorld();
+            if (worldserver.disableLevelSaving) {
+                continue;
+            }
+
+            SaveWriter.defer(() -> {
+                try {
+                    ((IMixinWorldServer) worldserver).saveLevelData();
+                } catch (MinecraftException e) {
+                    logger.warn(e.getMessage());
+                }
+            });
+
+            final ChunkSaveQueue queue = ((IMixinWorldServer) worldserver).getChunkSaveQueue();
+            for (Chunk chunk : new ArrayList<>(((IMixinChunkProviderServer) worldserver.theChunkProviderServer).getLoadedChunks())) {
+                if (chunk.needsSaving(true)) {
+                    queue.add(chunk);
+                }
+
+                // Like saveAllChunks, unload the chunks no player is watching
+                if (!worldserver.getPlayerManager().hasPlayerInstance(chunk.xPosition, chunk.zPosition)) {
+                    worldserver.theChunkProviderServer.dropChunk(chunk.xPosition, chunk.zPosition);
+                }
+            }
+        }
+    }
+
     /**
      * @author Zidane
      * @reason Handles ticking the additional worlds loaded by Sponge.
      */
     @Overwrite
     public void updateTimeLightAndEntities() {
+        // Sponge - Time the phases of the tick
+        final PhaseTimings timings = PhaseProfiler.getServerTimings();
+        long phaseStart = System.nanoTime();
+        this.enterPhase(TickPhase.JOBS, null);
+
         this.theProfiler.startSection("jobs");
 
-        synchronized (this.futureTaskQueue) {
-            while (!this.futureTaskQueue.isEmpty()) {
-                Util.runTask(this.futureTaskQueue.poll(), logger);
-            }
-        }
+        // Sponge start - Run scheduled tasks from our queue within the configured time budget
+        this.scheduledTasks.run(TimeUnit.MILLISECONDS.toNanos(SpongeVanilla.INSTANCE.getConfig().getTick().getScheduledTaskBudget()), logger);
+        phaseStart = this.endPhase(timings, TickPhase.JOBS, phaseStart);
+        // Sponge end
+
+        // Sponge start - Send the time updates of all worlds in a single pass over the players
+        this.theProfiler.endStartSection("timeSync");
+        this.enterPhase(TickPhase.TIME_SYNC, null);
+        this.timeSynchronizer.tick(this.tickCounter, this.serverConfigManager.playerEntityList);
+        phaseStart = this.endPhase(timings, TickPhase.TIME_SYNC, phaseStart);
+        // Sponge end
 
         this.theProfiler.endStartSection("levels");
+        this.enterPhase(TickPhase.LEVELS, null); // Sponge
 
         // Sponge start - Iterate over all our dimensions
-        Integer[] ids = VanillaDimensionManager.getIDs(this.tickCounter % 200 == 0);
-        for (int j = 0; j < ids.length; ++j) {
-            int id = ids[j];
+        final TickedWorld[] worlds = VanillaDimensionManager.getTickedWorlds();
+        final ParallelWorldTicker worldTicker = this.getWorldTicker();
+        for (int j = 0; j < worlds.length; ++j) {
+            final TickedWorld ticked = worlds[j];
             // Sponge end
             long i = System.nanoTime();
 
-            if (j == 0 || this.getAllowNether()) {
+            // Sponge - Skip low priority worlds if the server can't keep up
+            if ((j == 0 || this.getAllowNether()) && TickGovernor.shouldTick(ticked, this.tickCounter)) {
                 // Sponge start - Get world from our dimension manager
-                WorldServer worldserver = VanillaDimensionManager.getWorldFromDimId(id);
+                WorldServer worldserver = ticked.getWorld();
                 // Sponge end
                 this.theProfiler.startSection(worldserver.getWorldInfo().getWorldName());
 
-                if (this.tickCounter % 20 == 0) {
-                    this.theProfiler.startSection("timeSync");
-                    this.serverConfigManager.sendPacketToAllPlayersInDimension(
-                            new S03PacketTimeUpdate(worldserver.getTotalWorldTime(), worldserver.getWorldTime(),
-                                    worldserver.getGameRules().getBoolean("doDaylightCycle")), worldserver.provider.getDimensionId());
+                // Sponge start - Tick the world later if parallel world ticking is enabled
+                if (worldTicker != null) {
+                    this.parallelWorlds.add(ticked);
                     this.theProfiler.endSection();
+                    continue;
                 }
 
-                this.theProfiler.startSection("tick");
-
-                try {
-                    worldserver.tick();
-                } catch (Throwable throwable1) {
-                    CrashReport crashreport = CrashReport.makeCrashReport(throwable1, "Exception ticking world");
-                    worldserver.addWorldInfoToCrashReport(crashreport);
-                    throw new ReportedException(crashreport);
-                }
-
-                try {
-                    worldserver.updateEntities();
-                } catch (Throwable throwable) {
-                    CrashReport crashreport1 = CrashReport.makeCrashReport(throwable, "Exception ticking world entities");
-                    worldserver.addWorldInfoToCrashReport(crashreport1);
-                    throw new ReportedException(crashreport1);
-                }
-
-                this.theProfiler.endSection();
-                this.theProfiler.startSection("tracker");
-                worldserver.getEntityTracker().updateTrackedEntities();
-                this.theProfiler.endSection();
+                this.tickWorld(ticked, true);
+                // Sponge end
                 this.theProfiler.endSection();
+
+                // Sponge start - Write tick times to our custom map, skipped ticks are not recorded
+                ticked.getTickTimes().record(System.nanoTime() - i);
+                // Sponge end
             }
+        }
 
-            // Sponge start - Write tick times to our custom map
-            this.worldTickTimes.get(id)[this.tickCounter % 100] = System.nanoTime() - i;
-            // Sponge end
+        // Sponge start - Tick all worlds at once and run cross-world operations afterwards
+        if (worldTicker != null) {
+            this.theProfiler.startSection("parallel");
+            this.enterPhase(TickPhase.LEVELS, null);
+            worldTicker.tick(this.parallelWorlds, ticked -> {
+                long i = System.nanoTime();
+                this.tickWorld(ticked, false);
+                ticked.getTickTimes().record(System.nanoTime() - i);
+            });
+            this.parallelWorlds.clear();
+            this.theProfiler.endStartSection("deferred");
+            ParallelWorldTicker.runDeferredTasks();
+            this.theProfiler.endSection();
         }
+        phaseStart = this.endPhase(timings, TickPhase.LEVELS, phaseStart);
+        // Sponge end
+
+        // Sponge start - Load the spawn area of new worlds and unload requested worlds
+        this.theProfiler.endStartSection("dim_loading");
+        this.enterPhase(TickPhase.DIM_LOADING, null);
+        AsyncWorldLoader.tick();
+        phaseStart = this.endPhase(timings, TickPhase.DIM_LOADING, phaseStart);
 
-        // Sponge start - Unload requested worlds
         this.theProfiler.endStartSection("dim_unloading");
+        this.enterPhase(TickPhase.DIM_UNLOADING, null);
         VanillaDimensionManager.unloadWorlds(this.worldTickTimes);
+        phaseStart = this.endPhase(timings, TickPhase.DIM_UNLOADING, phaseStart);
+
+        this.theProfiler.endStartSection("autosave");
+        this.enterPhase(TickPhase.AUTOSAVE, null);
+        this.saveQueuedChunks();
+        phaseStart = this.endPhase(timings, TickPhase.AUTOSAVE, phaseStart);
+
+        this.theProfiler.endStartSection("pregen");
+        this.enterPhase(TickPhase.PREGEN, null);
+        ChunkPregenerator.tick();
+        phaseStart = this.endPhase(timings, TickPhase.PREGEN, phaseStart);
         // Sponge end
 
         this.theProfiler.endStartSection("connection");
+        this.enterPhase(TickPhase.CONNECTION, null); // Sponge
         this.getNetworkSystem().networkTick();
+        phaseStart = this.endPhase(timings, TickPhase.CONNECTION, phaseStart); // Sponge
         this.theProfiler.endStartSection("players");
+        this.enterPhase(TickPhase.PLAYERS, null); // Sponge
         this.serverConfigManager.onTick();
+        phaseStart = this.endPhase(timings, TickPhase.PLAYERS, phaseStart); // Sponge
         this.theProfiler.endStartSection("tickables");
+        this.enterPhase(TickPhase.TICKABLES, null); // Sponge
 
         for (int k = 0; k < this.playersOnline.size(); ++k) {
             this.playersOnline.get(k).update();
         }
 
+        this.endPhase(timings, TickPhase.TICKABLES, phaseStart); // Sponge
+
+        // Sponge start - Post the chunk events collected during this tick
+        this.theProfiler.endStartSection("chunkEvents");
+        for (TickedWorld ticked : VanillaDimensionManager.getTickedWorlds()) {
+            ((IMixinWorldServer) ticked.getWorld()).getChunkEventBatch().post((World) ticked.getWorld());
+        }
+        // Sponge end
+
         this.theProfiler.endSection();
     }
 
+    private void saveQueuedChunks() {
+        final VanillaConfig.WorldCategory config = SpongeVanilla.INSTANCE.getConfig().getWorld();
+        if (!config.isIncrementalSave()) {
+            return;
+        }
+
+        final long interval = TimeUnit.SECONDS.toNanos(config.getChunkSaveInterval());
+        final long budget = (long) (config.getChunkSaveBudget() * TimeUnit.MILLISECONDS.toNanos(1));
+        for (TickedWorld ticked : VanillaDimensionManager.getTickedWorlds()) {
+            final WorldServer worldserver = ticked.getWorld();
+            if (!worldserver.disableLevelSaving) {
+                ((IMixinWorldServer) worldserver).getChunkSaveQueue().save((IMixinChunkProviderServer) worldserver.theChunkProviderServer,
+                        interval, budget);
+            }
+        }
+    }
+
+    private void enterPhase(TickPhase phase, @Nullable TickedWorld ticked) {
+        if (this.watchdog != null) {
+            this.watchdog.enterPhase(phase, ticked != null ? ticked.getWorld().getWorldInfo().getWorldName() : null);
+        }
+    }
+
+    private long endPhase(PhaseTimings timings, TickPhase phase, long start) {
+        final long now = System.nanoTime();
+        timings.record(phase, now - start);
+        return now;
+    }
+
+    private void tickWorld(TickedWorld ticked, boolean profile) {
+        final WorldServer worldserver = ticked.getWorld();
+        final PhaseTimings timings = ticked.getTimings();
+
+        // The profiler is not thread-safe, so it can't be used when ticking worlds in parallel
+        if (profile) {
+            this.theProfiler.startSection("tick");
+        }
+
+        long phaseStart = System.nanoTime();
+
+        // The watchdog only samples the main thread
+        if (profile) {
+            this.enterPhase(TickPhase.TICK, ticked);
+        }
+
+        // Run the light updates left behind by an explosion that failed in the last tick
+        ((IMixinWorldServer) worldserver).getLightUpdateBatch().reset(worldserver);
+
+        try {
+            worldserver.tick();
+        } catch (Throwable throwable1) {
+            CrashReport crashreport = CrashReport.makeCrashReport(throwable1, "Exception ticking world");
+            worldserver.addWorldInfoToCrashReport(crashreport);
+            throw new ReportedException(crashreport);
+        }
+
+        phaseStart = this.endPhase(timings, TickPhase.TICK, phaseStart);
+        if (profile) {
+            this.enterPhase(TickPhase.ENTITIES, ticked);
+        }
+
+        try {
+            worldserver.updateEntities();
+            // Sponge - Run the explosions merged while updating the entities
+            ((IMixinWorldServer) worldserver).getExplosionMerger().explode(worldserver);
+        } catch (Throwable throwable) {
+            CrashReport crashreport1 = CrashReport.makeCrashReport(throwable, "Exception ticking world entities");
+            worldserver.addWorldInfoToCrashReport(crashreport1);
+            throw new ReportedException(crashreport1);
+        }
+
+        phaseStart = this.endPhase(timings, TickPhase.ENTITIES, phaseStart);
+
+        if (profile) {
+            this.theProfiler.endSection();
+            this.theProfiler.startSection("tracker");
+            this.enterPhase(TickPhase.TRACKER, ticked);
+        }
+
+        worldserver.getEntityTracker().updateTrackedEntities();
+        this.endPhase(timings, TickPhase.TRACKER, phaseStart);
+
+        if (profile) {
+            this.theProfiler.endSection();
+        }
+    }
+
+    @Nullable
+    private ParallelWorldTicker getWorldTicker() {
+        if (this.worldTicker == null && SpongeVanilla.INSTANCE.getConfig().getTick().isParallelWorldTicking()) {
+            this.worldTicker = new ParallelWorldTicker(SpongeVanilla.INSTANCE.getConfig().getTick().getWorldTickThreads());
+        }
+        return this.worldTicker;
+    }
+
 }
@@ -25,14 +25,15 @@
 package org.spongepowered.server.mixin.world;
 
 import com.google.common.collect.ImmutableList;
+import net.minecraft.enchantment.EnchantmentProtection;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityLivingBase;
 import net.minecraft.util.AxisAlignedBB;
 import net.minecraft.util.BlockPos;
+import net.minecraft.util.Vec3;
 import net.minecraft.world.Explosion;
 import net.minecraft.world.World;
 import org.spongepowered.api.block.BlockSnapshot;
-import org.spongepowered.api.block.BlockTypes;
 import org.spongepowered.api.data.Transaction;
 import org.spongepowered.api.entity.EntitySnapshot;
 import org.spongepowered.api.entity.projectile.Projectile;
@@ -40,16 +41,30 @@
 import org.spongepowered.api.event.cause.Cause;
 import org.spongepowered.api.event.cause.NamedCause;
 import org.spongepowered.api.event.world.ExplosionEvent;
+import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Constant;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.ModifyConstant;
 import org.spongepowered.asm.mixin.injection.Redirect;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import org.spongepowered.common.SpongeImpl;
 import org.spongepowered.common.util.VecHelper;
+import org.spongepowered.server.SpongeVanilla;
 import org.spongepowered.server.interfaces.IMixinExplosion;
+import org.spongepowered.server.interfaces.IMixinWorldServer;
+import org.spongepowered.server.world.explosion.ExplosionEngine;
+import org.spongepowered.server.world.explosion.ExplosionRayCaster;
+import org.spongepowered.server.world.explosion.LazyBlockTransactionList;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.annotation.Nullable;
 
@@ -59,8 +74,15 @@ public abstract class MixinExplosion implements org.spongepowered.api.world.expl
     @Shadow private World worldObj;
     @Shadow @Nullable private Entity exploder;
     @Shadow private List<BlockPos> affectedBlockPositions;
+    @Shadow @Final private double explosionX;
+    @Shadow @Final private double explosionY;
+    @Shadow @Final private double explosionZ;
+    @Shadow @Final private float explosionSize;
     @Shadow @Nullable abstract EntityLivingBase getExplosivePlacedBy();
 
+    @Nullable private Set<BlockPos> collectedBlocks;
+    private boolean deferringLight;
+
     @Override
     public Cause createCause() {
         Object source;
@@ -94,21 +116,84 @@ public Cause createCause() {
         }
     }
 
+    @Inject(method = "doExplosionA", at = @At("HEAD"))
+    private void onCollectBlocks(CallbackInfo ci) {
+        final ExplosionEngine engine = SpongeVanilla.INSTANCE.getConfig().getExplosion().getEngine();
+        if (engine != ExplosionEngine.VANILLA) {
+            this.collectedBlocks = ExplosionRayCaster.collect(this.worldObj, this.exploder, this.explosionX, this.explosionY, this.explosionZ,
+                    this.explosionSize, this.worldObj.rand, engine == ExplosionEngine.PARALLEL);
+        }
+    }
+
+    @ModifyConstant(method = "doExplosionA", constant = @Constant(intValue = 16))
+    private int onGetRayGridSize(int size) {
+        // Skip the Vanilla rays if the blocks were already collected
+        return this.collectedBlocks != null ? 0 : size;
+    }
+
+    @Redirect(method = "doExplosionA", at = @At(value = "INVOKE", target = "Ljava/util/List;addAll(Ljava/util/Collection;)Z", remap = false))
+    private boolean onAddAffectedBlocks(List<BlockPos> affectedBlocks, Collection<BlockPos> blocks) {
+        if (this.collectedBlocks != null) {
+            blocks = this.collectedBlocks;
+            this.collectedBlocks = null;
+        }
+        return affectedBlocks.addAll(blocks);
+    }
+
+    @Inject(method = "doExplosionB", at = @At("HEAD"))
+    private void onApplyBlocks(boolean spawnParticles, CallbackInfo ci) {
+        if (this.worldObj instanceof IMixinWorldServer && SpongeVanilla.INSTANCE.getConfig().getExplosion().isDeferLightUpdates()) {
+            this.deferringLight = true;
+            ((IMixinWorldServer) this.worldObj).getLightUpdateBatch().begin();
+        }
+    }
+
+    @Inject(method = "doExplosionB", at = @At("RETURN"))
+    private void onBlocksApplied(boolean spawnParticles, CallbackInfo ci) {
+        if (this.deferringLight) {
+            this.deferringLight = false;
+            ((IMixinWorldServer) this.worldObj).getLightUpdateBatch().end(this.worldObj);
+        }
+    }
+
+    @Redirect(method = "doExplosionA", at = @At(value = "INVOKE",
+            target = "Lnet/minecraft/enchantment/EnchantmentProtection;func_92092_a(Lnet/minecraft/entity/Entity;D)D"))
+    private double onGetKnockback(Entity entity, double exposure) {
+        return EnchantmentProtection.func_92092_a(entity, exposure) * getKnockbackMultiplier();
+    }
+
+    @Redirect(method = "doExplosionA", at = @At(value = "INVOKE",
+            target = "Ljava/util/Map;put(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;", remap = false))
+    private Object onPutPlayerKnockback(Map<Object, Object> playerKnockbackMap, Object player, Object knockback) {
+        // The knockback of players is applied by the client
+        final int multiplier = getKnockbackMultiplier();
+        if (multiplier != 1) {
+            final Vec3 vec = (Vec3) knockback;
+            knockback = new Vec3(vec.xCoord * multiplier, vec.yCoord * multiplier, vec.zCoord * multiplier);
+        }
+        return playerKnockbackMap.put(player, knockback);
+    }
+
+    private int getKnockbackMultiplier() {
+        // Merged TNT explosions apply the knockback of all explosions at once
+        return this.worldObj instanceof IMixinWorldServer ? ((IMixinWorldServer) this.worldObj).getExplosionMerger().getMultiplier() : 1;
+    }
+
     @Redirect(method = "doExplosionA", at = @At(value = "INVOKE", target = "Lnet/minecraft/world/World;"
             + "getEntitiesWithinAABBExcludingEntity(Lnet/minecraft/entity/Entity;Lnet/minecraft/util/AxisAlignedBB;)Ljava/util/List;"))
     private List<Entity> callWorldOnExplosionEvent(World world, Entity entity, AxisAlignedBB aabb) {
         final List<Entity> affectedEntities = this.shouldDamageEntities() ? world.getEntitiesWithinAABBExcludingEntity(entity, aabb) : Collections.emptyList();
         final org.spongepowered.api.world.World spongeWorld = (org.spongepowered.api.world.World) this.worldObj;
 
-        final ImmutableList.Builder<Transaction<BlockSnapshot>> blockTransactionBuilder = ImmutableList.builder();
+        // Only create the block snapshots if a listener accesses the transactions
+        final List<BlockPos> positions = new ArrayList<>(this.affectedBlockPositions.size());
         for (BlockPos pos : this.affectedBlockPositions) {
             if (world.isValid(pos)) {
-                final BlockSnapshot currentSnapshot = spongeWorld.createSnapshot(pos.getX(), pos.getY(), pos.getZ());
-                // TODO Is this the correct state? Would replacement state depend on blocktype?
-                blockTransactionBuilder.add(new Transaction<>(currentSnapshot, currentSnapshot.withState(BlockTypes.AIR.getDefaultState())));
+                positions.add(pos);
             }
         }
-        final ImmutableList<Transaction<BlockSnapshot>> blockTransactions = blockTransactionBuilder.build();
+        // TODO Is this the correct state? Would replacement state depend on blocktype?
+        final LazyBlockTransactionList blockTransactions = new LazyBlockTransactionList(spongeWorld, positions);
 
         final ImmutableList.Builder<EntitySnapshot> entitySnapshotBuilder = ImmutableList.builder();
         for (Entity affectedEntity : affectedEntities) {
@@ -126,8 +211,12 @@ private List<Entity> callWorldOnExplosionEvent(World world, Entity entity, AxisA
         // TODO Rolling back an explosion...this will be difficult
         if (!SpongeImpl.postEvent(event)) {
             if (shouldBreakBlocks()) {
-                for (Transaction<BlockSnapshot> transaction : event.getTransactions()) {
-                    if (transaction.isValid()) {
+                for (int i = 0; i < blockTransactions.size(); i++) {
+                    // Transactions that were never accessed can't have been invalidated
+                    final Transaction<BlockSnapshot> transaction = blockTransactions.getIfCreated(i);
+                    if (transaction == null) {
+                        affectedBlockPositions.add(blockTransactions.getPosition(i));
+                    } else if (transaction.isValid()) {
                         affectedBlockPositions.add(VecHelper.toBlockPos(transaction.getFinal().getPosition()));
                     }
                 }
@@ -24,14 +24,27 @@
  */
 package org.spongepowered.server.mixin.world;
 
+import com.google.common.base.Predicate;
+import net.minecraft.entity.Entity;
+import net.minecraft.util.AxisAlignedBB;
+import net.minecraft.util.BlockPos;
 import net.minecraft.world.World;
 import net.minecraft.world.storage.WorldInfo;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.Redirect;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 import org.spongepowered.common.interfaces.world.IMixinWorld;
+import org.spongepowered.server.interfaces.IMixinWorldServer;
+import org.spongepowered.server.world.EntityIndex;
+import org.spongepowered.server.world.explosion.LightUpdateBatch;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
 
 @Mixin(World.class)
 public abstract class MixinWorld implements IMixinWorld {
@@ -46,4 +59,47 @@ private void onUpdateWeather(CallbackInfo ci) {
         this.setWeatherStartTime(this.worldInfo.getWorldTotalTime());
     }
 
+    @Inject(method = "getEntitiesInAABBexcluding", at = @At("HEAD"), cancellable = true)
+    private void onGetEntitiesInAABB(@Nullable Entity excluded, AxisAlignedBB box, @Nullable Predicate<? super Entity> filter,
+            CallbackInfoReturnable<List<Entity>> cir) {
+        final EntityIndex entityIndex = getEntityIndex();
+        if (entityIndex != null) {
+            cir.setReturnValue(entityIndex.getEntities(excluded, box, filter));
+        }
+    }
+
+    @Inject(method = "getEntitiesWithinAABB(Ljava/lang/Class;Lnet/minecraft/util/AxisAlignedBB;Lcom/google/common/base/Predicate;)Ljava/util/List;",
+            at = @At("HEAD"), cancellable = true)
+    private <T extends Entity> void onGetEntitiesOfTypeInAABB(Class<? extends T> type, AxisAlignedBB box, @Nullable Predicate<? super T> filter,
+            CallbackInfoReturnable<List<T>> cir) {
+        final EntityIndex entityIndex = getEntityIndex();
+        if (entityIndex != null) {
+            cir.setReturnValue(entityIndex.getEntities(type, box, filter));
+        }
+    }
+
+    @Nullable
+    private EntityIndex getEntityIndex() {
+        if (this instanceof IMixinWorldServer) {
+            final EntityIndex entityIndex = ((IMixinWorldServer) this).getEntityIndex();
+            if (entityIndex.isEnabled()) {
+                return entityIndex;
+            }
+        }
+        return null;
+    }
+
+    @Redirect(method = "setBlockState(Lnet/minecraft/util/BlockPos;Lnet/minecraft/block/state/IBlockState;I)Z", at = @At(value = "INVOKE",
+            target = "Lnet/minecraft/world/World;checkLight(Lnet/minecraft/util/BlockPos;)Z"))
+    private boolean onCheckLight(World world, BlockPos pos) {
+        if (this instanceof IMixinWorldServer) {
+            final LightUpdateBatch batch = ((IMixinWorldServer) this).getLightUpdateBatch();
+            if (batch.isDeferring()) {
+                batch.add(pos);
+                return true;
+            }
+        }
+        return world.checkLight(pos);
+    }
+
 }
@@ -25,11 +25,13 @@
 package org.spongepowered.server.mixin.world;
 
 import net.minecraft.entity.Entity;
+import net.minecraft.entity.item.EntityTNTPrimed;
 import net.minecraft.network.Packet;
 import net.minecraft.profiler.Profiler;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.management.ServerConfigurationManager;
 import net.minecraft.world.Explosion;
+import net.minecraft.world.MinecraftException;
 import net.minecraft.world.WorldProvider;
 import net.minecraft.world.WorldServer;
 import net.minecraft.world.storage.ISaveHandler;
@@ -38,6 +40,7 @@
 import org.spongepowered.api.event.world.ExplosionEvent;
 import org.spongepowered.api.world.World;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.Redirect;
@@ -45,11 +48,26 @@
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 import org.spongepowered.asm.mixin.injection.callback.LocalCapture;
 import org.spongepowered.common.SpongeImpl;
+import org.spongepowered.server.SpongeVanilla;
 import org.spongepowered.server.interfaces.IMixinExplosion;
+import org.spongepowered.server.interfaces.IMixinWorldServer;
+import org.spongepowered.server.world.ChunkEventBatch;
+import org.spongepowered.server.world.ChunkSaveQueue;
+import org.spongepowered.server.world.EntityIndex;
+import org.spongepowered.server.world.explosion.ExplosionMerger;
+import org.spongepowered.server.world.explosion.LightUpdateBatch;
 import org.spongepowered.server.world.VanillaDimensionManager;
 
 @Mixin(WorldServer.class)
-public abstract class MixinWorldServer extends net.minecraft.world.World {
+public abstract class MixinWorldServer extends net.minecraft.world.World implements IMixinWorldServer {
+
+    @Shadow protected abstract void saveLevel() throws MinecraftException;
+
+    private final ChunkEventBatch chunkEventBatch = new ChunkEventBatch();
+    private final ChunkSaveQueue chunkSaveQueue = new ChunkSaveQueue();
+    private final ExplosionMerger explosionMerger = new ExplosionMerger();
+    private final LightUpdateBatch lightUpdateBatch = new LightUpdateBatch();
+    private final EntityIndex entityIndex = new EntityIndex(SpongeVanilla.INSTANCE.getConfig().getWorld().isEntityIndex());
 
     private MixinWorldServer(ISaveHandler saveHandlerIn, WorldInfo info, WorldProvider providerIn, Profiler profilerIn, boolean client) {
         super(saveHandlerIn, info, providerIn, profilerIn, client);
@@ -61,6 +79,17 @@ private void onConstructed(MinecraftServer server, ISaveHandler saveHandlerIn, W
         VanillaDimensionManager.setWorld(dimensionId, (WorldServer) (Object) this);
     }
 
+    @Inject(method = "newExplosion", at = @At("HEAD"), cancellable = true)
+    private void onNewExplosion(Entity entityIn, double x, double y, double z, float strength, boolean isFlaming, boolean isSmoking,
+            CallbackInfoReturnable<Explosion> cir) {
+        if (entityIn instanceof EntityTNTPrimed && !this.explosionMerger.isExploding()
+                && SpongeVanilla.INSTANCE.getConfig().getExplosion().isMergeTntExplosions()) {
+            // Run the explosion once for all TNT at the same position after the entities were updated
+            this.explosionMerger.add(entityIn, x, y, z, strength, isFlaming, isSmoking);
+            cir.setReturnValue(new Explosion(this, entityIn, x, y, z, strength, isFlaming, isSmoking));
+        }
+    }
+
     @Inject(method = "newExplosion", at = @At(value = "INVOKE", target = "Lnet/minecraft/world/Explosion;doExplosionA()V"),
             locals = LocalCapture.CAPTURE_FAILHARD, cancellable = true)
     private void callWorldOnExplosionEvent(Entity entityIn, double x, double y, double z, float strength, boolean isFlaming, boolean isSmoking,
@@ -72,6 +101,36 @@ private void callWorldOnExplosionEvent(Entity entityIn, double x, double y, doub
         }
     }
 
+    @Override
+    public void saveLevelData() throws MinecraftException {
+        saveLevel();
+    }
+
+    @Override
+    public ChunkEventBatch getChunkEventBatch() {
+        return this.chunkEventBatch;
+    }
+
+    @Override
+    public ChunkSaveQueue getChunkSaveQueue() {
+        return this.chunkSaveQueue;
+    }
+
+    @Override
+    public ExplosionMerger getExplosionMerger() {
+        return this.explosionMerger;
+    }
+
+    @Override
+    public LightUpdateBatch getLightUpdateBatch() {
+        return this.lightUpdateBatch;
+    }
+
+    @Override
+    public EntityIndex getEntityIndex() {
+        return this.entityIndex;
+    }
+
     // Prevent wrong weather changes getting sent to players in other (unaffected) dimensions
     // This causes "phantom rain" on the client, sunny and rainy weather at the same time
     @Redirect(method = "updateWeather", require = 4, at = @At(value = "INVOKE",
@@ -24,31 +24,119 @@
  */
 package org.spongepowered.server.mixin.world.chunk;
 
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.entity.Entity;
+import net.minecraft.util.BlockPos;
+import net.minecraft.util.ClassInheritanceMultiMap;
+import net.minecraft.world.EnumSkyBlock;
 import net.minecraft.world.World;
 import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.IChunkProvider;
 import org.spongepowered.api.event.SpongeEventFactory;
 import org.spongepowered.api.event.cause.Cause;
 import org.spongepowered.api.event.cause.NamedCause;
+import org.spongepowered.asm.lib.Opcodes;
 import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.Redirect;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 import org.spongepowered.common.SpongeImpl;
+import org.spongepowered.server.SpongeVanilla;
+import org.spongepowered.server.interfaces.IMixinWorldServer;
+import org.spongepowered.server.tick.ParallelWorldTicker;
+import org.spongepowered.server.world.EntityIndex;
 
 @Mixin(Chunk.class)
 public abstract class MixinChunk implements org.spongepowered.api.world.Chunk {
 
     @Shadow @Final private World worldObj;
+    @Shadow private boolean isModified;
+    @Shadow @Final private ClassInheritanceMultiMap<Entity>[] entityLists;
+
+    @Inject(method = "setChunkModified", at = @At("HEAD"))
+    private void onSetChunkModified(CallbackInfo ci) {
+        queueForSaving();
+    }
+
+    // Block and light changes set the field directly instead of calling setChunkModified
+    @Inject(method = "setBlockState", at = @At(value = "FIELD", target = "Lnet/minecraft/world/chunk/Chunk;isModified:Z", opcode = Opcodes.PUTFIELD))
+    private void onSetBlockState(BlockPos pos, IBlockState state, CallbackInfoReturnable<IBlockState> cir) {
+        queueForSaving();
+    }
+
+    @Inject(method = "setLightFor", at = @At(value = "FIELD", target = "Lnet/minecraft/world/chunk/Chunk;isModified:Z", opcode = Opcodes.PUTFIELD))
+    private void onSetLightFor(EnumSkyBlock type, BlockPos pos, int value, CallbackInfo ci) {
+        queueForSaving();
+    }
+
+    @Inject(method = "setModified", at = @At("HEAD"))
+    private void onSetModified(boolean modified, CallbackInfo ci) {
+        if (modified) {
+            queueForSaving();
+        }
+    }
+
+    private void queueForSaving() {
+        // All changes that mark the chunk as modified queue it, so a modified chunk is always queued already
+        if (!this.isModified && SpongeVanilla.INSTANCE.getConfig().getWorld().isIncrementalSave()) {
+            ((IMixinWorldServer) this.worldObj).getChunkSaveQueue().add((Chunk) (Object) this);
+        }
+    }
+
+    @Inject(method = "addEntity", at = @At("RETURN"))
+    private void onAddEntity(Entity entity, CallbackInfo ci) {
+        ((IMixinWorldServer) this.worldObj).getEntityIndex().add(entity);
+    }
+
+    @Inject(method = "removeEntityAtIndex", at = @At("HEAD"))
+    private void onRemoveEntity(Entity entity, int index, CallbackInfo ci) {
+        ((IMixinWorldServer) this.worldObj).getEntityIndex().remove(entity);
+    }
+
+    // Population makes falling blocks of all worlds fall instantly, see MixinBlockFalling
+    @Redirect(method = "populateChunk", at = @At(value = "INVOKE",
+            target = "Lnet/minecraft/world/chunk/IChunkProvider;populate(Lnet/minecraft/world/chunk/IChunkProvider;II)V"))
+    private void onPopulate(IChunkProvider chunkProvider, IChunkProvider generator, int x, int z) {
+        ParallelWorldTicker.lockSharedState();
+        try {
+            chunkProvider.populate(generator, x, z);
+        } finally {
+            ParallelWorldTicker.unlockSharedState();
+        }
+    }
 
     @Inject(method = "onChunkLoad", at = @At("RETURN"))
     private void postChunkLoad(CallbackInfo ci) {
+        if (SpongeVanilla.INSTANCE.getConfig().getWorld().isBatchedChunkEvents()) {
+            ((IMixinWorldServer) this.worldObj).getChunkEventBatch().addLoaded(this);
+            return;
+        }
+
         SpongeImpl.postEvent(SpongeEventFactory.createLoadChunkEvent(Cause.of(NamedCause.source(this.worldObj)), this));
     }
 
     @Inject(method = "onChunkUnload", at = @At("RETURN"))
     private void postChunkUnload(CallbackInfo ci) {
+        // The entities stay in the lists of the unloaded chunk
+        final EntityIndex entityIndex = ((IMixinWorldServer) this.worldObj).getEntityIndex();
+        if (entityIndex.isEnabled()) {
+            for (ClassInheritanceMultiMap<Entity> entities : this.entityLists) {
+                entities.forEach(entityIndex::remove);
+            }
+        }
+
+        // The chunk is saved when it is unloaded
+        ((IMixinWorldServer) this.worldObj).getChunkSaveQueue().remove((Chunk) (Object) this);
+
+        if (SpongeVanilla.INSTANCE.getConfig().getWorld().isBatchedChunkEvents()) {
+            ((IMixinWorldServer) this.worldObj).getChunkEventBatch().addUnloaded(this);
+            return;
+        }
+
         SpongeImpl.postEvent(SpongeEventFactory.createUnloadChunkEvent(Cause.of(NamedCause.source(this.worldObj)), this));
     }
 
@@ -0,0 +1,156 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.mixin.world.chunk.storage;
+
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.world.ChunkCoordIntPair;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.AnvilChunkLoader;
+import net.minecraft.world.chunk.storage.RegionFileCache;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.Redirect;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+import org.spongepowered.server.interfaces.IMixinAnvilChunkLoader;
+import org.spongepowered.server.world.storage.ChunkCache;
+import org.spongepowered.server.world.storage.MappedRegionFileCache;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import javax.annotation.Nullable;
+
+@Mixin(AnvilChunkLoader.class)
+public abstract class MixinAnvilChunkLoader implements IMixinAnvilChunkLoader {
+
+    @Shadow @Final private File chunkSaveLocation;
+    @Shadow private Map<ChunkCoordIntPair, NBTTagCompound> chunksToRemove;
+    @Shadow private Set<ChunkCoordIntPair> pendingAnvilChunksCoordinates;
+
+    @Shadow protected abstract Chunk checkedReadChunkFromNBT(World worldIn, int x, int z, NBTTagCompound p_75822_4_);
+
+    private final ChunkCache chunkCache = new ChunkCache();
+
+    // Completed by the file I/O thread once the chunks queued so far have been written
+    private final Object pendingWritesLock = new Object();
+    @Nullable private CompletableFuture<Void> pendingWrites;
+
+    @Override
+    public File getChunkSaveLocation() {
+        return this.chunkSaveLocation;
+    }
+
+    @Override
+    public ChunkCache getChunkCache() {
+        return this.chunkCache;
+    }
+
+    private boolean hasPendingWrites() {
+        // A chunk is added to the pending coordinates before it is removed from the queue
+        return !this.chunksToRemove.isEmpty() || !this.pendingAnvilChunksCoordinates.isEmpty();
+    }
+
+    @Override
+    public CompletableFuture<Void> getPendingWrites() {
+        synchronized (this.pendingWritesLock) {
+            if (!hasPendingWrites()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            if (this.pendingWrites == null) {
+                this.pendingWrites = new CompletableFuture<>();
+            }
+            return this.pendingWrites;
+        }
+    }
+
+    @Nullable
+    @Override
+    public NBTTagCompound readChunkData(int x, int z) throws IOException {
+        // Same as the first part of loadChunk, the pending saves are stored in a concurrent map
+        NBTTagCompound compound = this.chunksToRemove.get(new ChunkCoordIntPair(x, z));
+        if (compound == null) {
+            DataInputStream in = this.getChunkInputStream(x, z);
+            if (in == null) {
+                return null;
+            }
+
+            compound = CompressedStreamTools.read(in);
+        }
+        return compound;
+    }
+
+    @Nullable
+    @Override
+    public Chunk readChunk(World world, int x, int z, NBTTagCompound compound) {
+        return checkedReadChunkFromNBT(world, x, z, compound);
+    }
+
+    @Redirect(method = "loadChunk", at = @At(value = "INVOKE",
+            target = "Lnet/minecraft/world/chunk/storage/RegionFileCache;getChunkInputStream(Ljava/io/File;II)Ljava/io/DataInputStream;"))
+    private DataInputStream onLoadChunkInputStream(File worldDir, int x, int z) {
+        return this.getChunkInputStream(x, z);
+    }
+
+    @Nullable
+    private DataInputStream getChunkInputStream(int x, int z) {
+        // Read recently unloaded chunks from memory
+        final DataInputStream in = this.chunkCache.take(x, z);
+        return in != null ? in : RegionFileCache.getChunkInputStream(this.chunkSaveLocation, x, z);
+    }
+
+    @Inject(method = "writeChunkNBTTags", at = @At("HEAD"))
+    private void onWriteChunkNBTTags(ChunkCoordIntPair pos, NBTTagCompound compound, CallbackInfo ci) throws IOException {
+        this.chunkCache.onWrite(pos.chunkXPos, pos.chunkZPos, compound);
+    }
+
+    @Inject(method = "writeNextIO", at = @At("RETURN"))
+    private void onWriteNextIO(CallbackInfoReturnable<Boolean> cir) {
+        // Write all chunks saved since the last flush at once when there are no more chunks to save
+        if (!cir.getReturnValueZ() && MappedRegionFileCache.isEnabled()) {
+            MappedRegionFileCache.flush(this.chunkSaveLocation);
+        }
+
+        final CompletableFuture<Void> pendingWrites;
+        synchronized (this.pendingWritesLock) {
+            if (this.pendingWrites == null || hasPendingWrites()) {
+                return;
+            }
+            pendingWrites = this.pendingWrites;
+            this.pendingWrites = null;
+        }
+        pendingWrites.complete(null);
+    }
+
+}
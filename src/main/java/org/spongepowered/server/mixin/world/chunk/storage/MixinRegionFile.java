@@ -0,0 +1,109 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.mixin.world.chunk.storage;
+
+import net.minecraft.world.chunk.storage.RegionFile;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Overwrite;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.server.world.storage.ChunkCodec;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+@Mixin(RegionFile.class)
+public abstract class MixinRegionFile {
+
+    @Shadow private RandomAccessFile dataFile;
+    @Shadow private List<Boolean> sectorFree;
+
+    @Shadow
+    private boolean outOfBounds(int x, int z) {
+        return false; // Shadowed
+    }
+
+    @Shadow
+    private int getOffset(int x, int z) {
+        return 0; // Shadowed
+    }
+
+    /**
+     * @author SpongePowered
+     * @reason Read all chunk codecs supported by the mapped region storage,
+     *     so chunks written uncompressed are not regenerated after switching
+     *     back to the Vanilla region storage
+     */
+    @Overwrite
+    @Nullable
+    public synchronized DataInputStream getChunkDataInputStream(int x, int z) {
+        if (this.outOfBounds(x, z)) {
+            return null;
+        } else {
+            try {
+                int i = this.getOffset(x, z);
+
+                if (i == 0) {
+                    return null;
+                } else {
+                    int j = i >> 8;
+                    int k = i & 255;
+
+                    if (j + k > this.sectorFree.size()) {
+                        return null;
+                    } else {
+                        this.dataFile.seek((long) (j * 4096));
+                        int l = this.dataFile.readInt();
+
+                        if (l > 4096 * k) {
+                            return null;
+                        } else if (l <= 0) {
+                            return null;
+                        } else {
+                            // Sponge start - Look up the codec instead of handling only GZip and Zlib
+                            final ChunkCodec codec = ChunkCodec.getById(this.dataFile.readByte());
+                            if (codec == null) {
+                                return null;
+                            }
+
+                            byte[] abyte = new byte[l - 1];
+                            this.dataFile.read(abyte);
+                            return new DataInputStream(new BufferedInputStream(codec.decompress(new ByteArrayInputStream(abyte))));
+                            // Sponge end
+                        }
+                    }
+                }
+            } catch (IOException var9) {
+                return null;
+            }
+        }
+    }
+
+}
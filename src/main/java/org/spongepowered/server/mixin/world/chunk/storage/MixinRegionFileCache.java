@@ -0,0 +1,63 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.mixin.world.chunk.storage;
+
+import net.minecraft.world.chunk.storage.RegionFileCache;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+import org.spongepowered.server.world.storage.MappedRegionFileCache;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+
+@Mixin(RegionFileCache.class)
+public abstract class MixinRegionFileCache {
+
+    @Inject(method = "getChunkInputStream", at = @At("HEAD"), cancellable = true)
+    private static void onGetChunkInputStream(File worldDir, int chunkX, int chunkZ, CallbackInfoReturnable<DataInputStream> cir) {
+        if (MappedRegionFileCache.isEnabled()) {
+            cir.setReturnValue(MappedRegionFileCache.getChunkInputStream(worldDir, chunkX, chunkZ));
+        }
+    }
+
+    @Inject(method = "getChunkOutputStream", at = @At("HEAD"), cancellable = true)
+    private static void onGetChunkOutputStream(File worldDir, int chunkX, int chunkZ, CallbackInfoReturnable<DataOutputStream> cir) {
+        if (MappedRegionFileCache.isEnabled()) {
+            cir.setReturnValue(MappedRegionFileCache.getChunkOutputStream(worldDir, chunkX, chunkZ));
+        }
+    }
+
+    @Inject(method = "clearRegionFileReferences", at = @At("HEAD"))
+    private static void onClearRegionFileReferences(CallbackInfo ci) {
+        if (MappedRegionFileCache.isEnabled()) {
+            MappedRegionFileCache.clear();
+        }
+    }
+
+}
@@ -24,27 +24,249 @@
  */
 package org.spongepowered.server.mixin.world.gen;
 
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.LongHashMap;
+import net.minecraft.world.ChunkCoordIntPair;
+import net.minecraft.world.World;
 import net.minecraft.world.WorldProvider;
 import net.minecraft.world.WorldServer;
 import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.chunk.IChunkProvider;
+import net.minecraft.world.chunk.storage.IChunkLoader;
 import net.minecraft.world.gen.ChunkProviderServer;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Overwrite;
 import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.Redirect;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+import org.spongepowered.server.SpongeVanilla;
+import org.spongepowered.server.config.VanillaConfig;
+import org.spongepowered.server.interfaces.IMixinAnvilChunkLoader;
+import org.spongepowered.server.interfaces.IMixinChunkProviderServer;
+import org.spongepowered.server.world.ChunkIOExecutor;
+import org.spongepowered.server.world.ChunkUnloadMetrics;
+import org.spongepowered.server.world.PendingChunkLoad;
 import org.spongepowered.server.world.VanillaDimensionManager;
 
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
 
 @Mixin(ChunkProviderServer.class)
-public abstract class MixinChunkProviderServer {
+public abstract class MixinChunkProviderServer implements IMixinChunkProviderServer {
 
     @Shadow private IChunkProvider serverChunkGenerator;
+    @Shadow private IChunkLoader chunkLoader;
     @Shadow private List<Chunk> loadedChunks;
     @Shadow private WorldServer worldObj;
+    @Shadow private Set<Long> droppedChunksSet;
+    @Shadow private LongHashMap<Chunk> id2ChunkMap;
+
+    @Shadow public abstract Chunk loadChunk(int chunkX, int chunkZ);
+    @Shadow public abstract void dropChunk(int x, int z);
+
+    @Shadow private void saveChunkData(Chunk chunkIn) {
+    }
+
+    @Shadow private void saveChunkExtraData(Chunk chunkIn) {
+    }
+
+    @Override
+    public List<Chunk> getLoadedChunks() {
+        return this.loadedChunks;
+    }
+
+    @Nullable
+    @Override
+    public IChunkLoader getChunkLoader() {
+        return this.chunkLoader;
+    }
+
+    @Override
+    public boolean saveChunk(Chunk chunk) {
+        saveChunkExtraData(chunk);
+        if (chunk.needsSaving(true)) {
+            saveChunkData(chunk);
+            chunk.setModified(false);
+            return true;
+        }
+        return false;
+    }
+
+    // Only accessed from the main thread
+    private final Map<Long, PendingChunkLoad> pendingLoads = new HashMap<>();
+    private final Map<Long, PendingChunkLoad> completingLoads = new HashMap<>();
+    private final Set<Long> unloadOrder = new LinkedHashSet<>();
+    private final ChunkUnloadMetrics unloadMetrics = new ChunkUnloadMetrics();
+
+    @Override
+    public int getUnloadQueueSize() {
+        return this.droppedChunksSet.size();
+    }
+
+    @Override
+    public ChunkUnloadMetrics getUnloadMetrics() {
+        return this.unloadMetrics;
+    }
+
+    @Override
+    public CompletableFuture<Chunk> loadChunkAsync(int x, int z, boolean playerDriven) {
+        final long key = ChunkCoordIntPair.chunkXZ2Int(x, z);
+        final Chunk loaded = this.id2ChunkMap.getValueByKey(key);
+        if (loaded != null) {
+            return CompletableFuture.completedFuture(loaded);
+        }
+
+        final PendingChunkLoad load = requestChunk(key, x, z, playerDriven);
+        if (load == null) {
+            return CompletableFuture.completedFuture(loadChunk(x, z));
+        }
+
+        if (!load.isCompleting()) {
+            // Add the chunk to the world on the main thread once it was read
+            load.setCompleting(true);
+            load.getData().whenComplete((data, e) -> MinecraftServer.getServer().addScheduledTask(() -> completeLoad(key, load)));
+        }
+
+        // Like loadChunk, cancel a pending unload of the chunk
+        this.droppedChunksSet.remove(key);
+        this.unloadOrder.remove(key);
+        return load.getChunk();
+    }
+
+    @Override
+    public CompletableFuture<?> readChunkAsync(int x, int z) {
+        final long key = ChunkCoordIntPair.chunkXZ2Int(x, z);
+        if (this.id2ChunkMap.getValueByKey(key) != null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        final PendingChunkLoad load = requestChunk(key, x, z, false);
+        return load != null ? load.getData() : CompletableFuture.completedFuture(null);
+    }
+
+    @Nullable
+    private PendingChunkLoad requestChunk(long key, int x, int z, boolean playerDriven) {
+        PendingChunkLoad load = this.pendingLoads.get(key);
+        if (load == null) {
+            if (!(this.chunkLoader instanceof IMixinAnvilChunkLoader) || !SpongeVanilla.INSTANCE.getConfig().getWorld().isAsyncChunkLoading()) {
+                return null;
+            }
+
+            final PendingChunkLoad newLoad = load = new PendingChunkLoad(x, z, playerDriven);
+            final IMixinAnvilChunkLoader loader = (IMixinAnvilChunkLoader) this.chunkLoader;
+            this.pendingLoads.put(key, load);
+            ChunkIOExecutor.submit(getLoadPriority(x, z), () -> {
+                if (newLoad.claim()) {
+                    readChunkData(loader, newLoad);
+                }
+            });
+        } else {
+            if (!playerDriven) {
+                load.setPlayerDriven(false);
+            }
+            load.setDropped(false);
+        }
+        return load;
+    }
+
+    private double getLoadPriority(int x, int z) {
+        // The squared distance to the closest player in chunks
+        double priority = Double.MAX_VALUE;
+        for (EntityPlayer player : this.worldObj.playerEntities) {
+            final double dx = (player.posX / 16) - x;
+            final double dz = (player.posZ / 16) - z;
+            priority = Math.min(priority, dx * dx + dz * dz);
+        }
+        return priority;
+    }
+
+    private static void readChunkData(IMixinAnvilChunkLoader loader, PendingChunkLoad load) {
+        try {
+            load.getData().complete(loader.readChunkData(load.getX(), load.getZ()));
+        } catch (Throwable e) {
+            load.getData().completeExceptionally(e);
+        }
+    }
+
+    private void completeLoad(long key, PendingChunkLoad load) {
+        if (this.pendingLoads.get(key) != load) {
+            return; // Already loaded synchronously
+        }
+
+        if (VanillaDimensionManager.getWorldFromDimId(this.worldObj.provider.getDimensionId()) != this.worldObj
+                || (load.isPlayerDriven() && load.isDropped())) {
+            // The world was unloaded or the player has left again
+            this.pendingLoads.remove(key);
+            load.getChunk().cancel(false);
+            return;
+        }
+
+        loadChunk(load.getX(), load.getZ());
+        if (load.isDropped()) {
+            // Dropped by a plugin while it was read, queue it again now that it is loaded
+            dropChunk(load.getX(), load.getZ());
+        }
+    }
+
+    @Redirect(method = "loadChunkFromFile", at = @At(value = "INVOKE",
+            target = "Lnet/minecraft/world/chunk/storage/IChunkLoader;loadChunk(Lnet/minecraft/world/World;II)Lnet/minecraft/world/chunk/Chunk;"))
+    private Chunk onLoadChunkFromFile(IChunkLoader loader, World world, int x, int z) throws IOException {
+        final long key = ChunkCoordIntPair.chunkXZ2Int(x, z);
+        final PendingChunkLoad load = this.pendingLoads.remove(key);
+        if (load == null) {
+            return loader.loadChunk(world, x, z);
+        }
+
+        // Complete the chunk future once the chunk was fully added to the world
+        this.completingLoads.put(key, load);
+
+        // Read the chunk directly if the I/O thread did not start yet, otherwise wait for it
+        if (load.claim()) {
+            readChunkData((IMixinAnvilChunkLoader) loader, load);
+        }
+
+        final NBTTagCompound compound;
+        try {
+            compound = load.getData().join();
+        } catch (CompletionException e) {
+            throw new IOException(e.getCause());
+        }
+
+        return compound != null ? ((IMixinAnvilChunkLoader) loader).readChunk(world, x, z, compound) : null;
+    }
+
+    @Inject(method = "loadChunk", at = @At("HEAD"))
+    private void onLoadChunkHead(int x, int z, CallbackInfoReturnable<Chunk> cir) {
+        // loadChunk removes the chunk from the unload queue
+        if (!this.unloadOrder.isEmpty()) {
+            this.unloadOrder.remove(ChunkCoordIntPair.chunkXZ2Int(x, z));
+        }
+    }
+
+    @Inject(method = "loadChunk", at = @At("RETURN"))
+    private void onLoadChunkReturn(int x, int z, CallbackInfoReturnable<Chunk> cir) {
+        if (!this.completingLoads.isEmpty()) {
+            final PendingChunkLoad load = this.completingLoads.remove(ChunkCoordIntPair.chunkXZ2Int(x, z));
+            if (load != null) {
+                load.getChunk().complete(cir.getReturnValue());
+            }
+        }
+    }
 
     // Optionally unload spawn chunks if not specified in the world configuration
     @Redirect(method = "dropChunk", at = @At(value = "INVOKE", target = "Lnet/minecraft/world/WorldProvider;canRespawnHere()Z"))
@@ -52,13 +274,92 @@ private boolean onCanRespawnHere(WorldProvider provider) {
         return provider.canRespawnHere() && VanillaDimensionManager.shouldLoadSpawn(provider.getDimensionId());
     }
 
-    @Inject(method = "unloadQueuedChunks", at = @At(value = "INVOKE_ASSIGN", target = "Ljava/util/List;remove(Ljava/lang/Object;)Z", remap = false),
-            cancellable = true)
-    private void onUnloadQueuedChunks(CallbackInfoReturnable<Boolean> cir) {
-        if (this.loadedChunks.isEmpty() && !VanillaDimensionManager.shouldLoadSpawn(this.worldObj.provider.getDimensionId())) {
-            VanillaDimensionManager.unloadWorld(this.worldObj.provider.getDimensionId());
-            cir.setReturnValue(this.serverChunkGenerator.unloadQueuedChunks());
+    @Inject(method = "dropChunk", at = @At("RETURN"))
+    private void onDropChunk(int x, int z, CallbackInfo ci) {
+        final long key = ChunkCoordIntPair.chunkXZ2Int(x, z);
+        if (this.droppedChunksSet.contains(key)) {
+            this.unloadOrder.add(key);
+
+            final PendingChunkLoad load = this.pendingLoads.get(key);
+            if (load != null) {
+                load.setDropped(true);
+            }
+        }
+    }
+
+    /**
+     * @author SpongePowered
+     * @reason Unloads the queued chunks within a time budget and the
+     *     configured watermarks, the chunks queued the longest first.
+     *     Also unloads the world once all of its chunks are unloaded.
+     */
+    @Overwrite
+    public boolean unloadQueuedChunks() {
+        if (!this.worldObj.disableLevelSaving) {
+            // Sponge start
+            final VanillaConfig.WorldCategory config = SpongeVanilla.INSTANCE.getConfig().getWorld();
+            final long budget = TimeUnit.MILLISECONDS.toNanos(config.getChunkUnloadBudget());
+            final int lowWatermark = config.getChunkUnloadLowWatermark();
+            final int highWatermark = config.getChunkUnloadHighWatermark();
+            final int dimensionId = this.worldObj.provider.getDimensionId();
+
+            if (this.unloadOrder.size() != this.droppedChunksSet.size()) {
+                // Chunks queued without dropChunk, these are unloaded last
+                this.unloadOrder.addAll(this.droppedChunksSet);
+            }
+
+            final long start = System.nanoTime();
+            int processed = 0;
+            int unloaded = 0;
+
+            for (Iterator<Long> itr = this.unloadOrder.iterator(); itr.hasNext(); ) {
+                final int loaded = this.loadedChunks.size();
+                if (loaded <= lowWatermark) {
+                    break;
+                }
+                if (highWatermark <= 0 || loaded <= highWatermark) {
+                    if (budget > 0 ? System.nanoTime() - start >= budget : processed >= 100) {
+                        break;
+                    }
+                }
+
+                final Long key = itr.next();
+                itr.remove();
+                if (!this.droppedChunksSet.remove(key)) {
+                    continue; // Loaded again in the meantime
+                }
+
+                processed++;
+                Chunk chunk = this.id2ChunkMap.getValueByKey(key);
+                if (chunk != null) {
+                    chunk.onChunkUnload();
+                    if (this.chunkLoader instanceof IMixinAnvilChunkLoader) {
+                        ((IMixinAnvilChunkLoader) this.chunkLoader).getChunkCache().markUnloaded(chunk.xPosition, chunk.zPosition);
+                    }
+                    this.saveChunkData(chunk);
+                    this.saveChunkExtraData(chunk);
+                    this.id2ChunkMap.remove(key);
+                    this.loadedChunks.remove(chunk);
+                    unloaded++;
+
+                    // Unload the world if it has no chunks left
+                    if (this.loadedChunks.isEmpty() && !VanillaDimensionManager.shouldLoadSpawn(dimensionId)) {
+                        this.unloadMetrics.record(unloaded, System.nanoTime() - start);
+                        VanillaDimensionManager.unloadWorld(dimensionId);
+                        return this.serverChunkGenerator.unloadQueuedChunks();
+                    }
+                }
+            }
+
+            this.unloadMetrics.record(unloaded, System.nanoTime() - start);
+            // Sponge end
+
+            if (this.chunkLoader != null) {
+                this.chunkLoader.chunkTick();
+            }
         }
+
+        return this.serverChunkGenerator.unloadQueuedChunks();
     }
 
 }
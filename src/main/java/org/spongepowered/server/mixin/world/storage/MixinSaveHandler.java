@@ -24,15 +24,24 @@
  */
 package org.spongepowered.server.mixin.world.storage;
 
+import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.world.storage.SaveHandler;
 import net.minecraft.world.storage.WorldInfo;
+import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.Redirect;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 import org.spongepowered.asm.mixin.injection.callback.LocalCapture;
 import org.spongepowered.common.interfaces.IMixinSaveHandler;
+import org.spongepowered.server.SpongeVanilla;
+import org.spongepowered.server.world.VanillaDimensionManager;
+import org.spongepowered.server.world.storage.SaveWriter;
 
 import java.io.File;
 import java.io.IOException;
@@ -40,6 +49,18 @@
 @Mixin(SaveHandler.class)
 public abstract class MixinSaveHandler implements IMixinSaveHandler {
 
+    private static final boolean ATOMIC_RENAME = File.separatorChar == '/';
+
+    @Shadow @Final private File worldDirectory;
+    @Shadow public abstract void saveWorldInfoWithPlayer(WorldInfo worldInformation, NBTTagCompound tagCompound);
+    @Shadow public abstract void writePlayerData(EntityPlayer player);
+
+    @Inject(method = "<init>", at = @At(value = "INVOKE", target = "Lnet/minecraft/world/storage/SaveHandler;setSessionLock()V"))
+    private void onTakeSessionLock(File savesDirectory, String directoryName, boolean playersDirectory, CallbackInfo ci) {
+        // A world that is still being unloaded from this directory needs the session lock to save its level data
+        VanillaDimensionManager.awaitUnload(this.worldDirectory);
+    }
+
     @Inject(method = "loadWorldInfo", locals = LocalCapture.CAPTURE_FAILHARD, cancellable = true, at = {
             @At(value = "RETURN", ordinal = 0),
             @At(value = "RETURN", ordinal = 1)
@@ -52,4 +73,64 @@ private void onLoadWorldInfoBeforeReturn(CallbackInfoReturnable<WorldInfo> cir,
         cir.setReturnValue(info);
     }
 
+    @Inject(method = "saveWorldInfoWithPlayer", at = @At("HEAD"), cancellable = true)
+    private void onSaveWorldInfo(WorldInfo worldInformation, NBTTagCompound tagCompound, CallbackInfo ci) {
+        if (SaveWriter.isDeferring()) {
+            final NBTTagCompound compound = worldInformation.cloneNBTCompound(tagCompound);
+            SaveWriter.submit(this, compound, () -> this.saveWorldInfoWithPlayer(worldInformation, tagCompound));
+            ci.cancel();
+        } else {
+            SaveWriter.awaitPending();
+        }
+    }
+
+    @Redirect(method = "saveWorldInfoWithPlayer", at = @At(value = "INVOKE",
+            target = "Lnet/minecraft/world/storage/WorldInfo;cloneNBTCompound(Lnet/minecraft/nbt/NBTTagCompound;)Lnet/minecraft/nbt/NBTTagCompound;"))
+    private NBTTagCompound onCloneWorldInfo(WorldInfo worldInformation, NBTTagCompound tagCompound) {
+        final NBTTagCompound snapshot = SaveWriter.getSnapshot();
+        return snapshot != null ? snapshot : worldInformation.cloneNBTCompound(tagCompound);
+    }
+
+    @Inject(method = "writePlayerData", at = @At("HEAD"), cancellable = true)
+    private void onWritePlayerData(EntityPlayer player, CallbackInfo ci) {
+        if (SaveWriter.isDeferring() || (SpongeVanilla.INSTANCE.getConfig().getWorld().isAsyncPlayerData()
+                && MinecraftServer.getServer().isCallingFromMinecraftThread())) {
+            final NBTTagCompound compound = new NBTTagCompound();
+            player.writeToNBT(compound);
+            SaveWriter.submit(player.getUniqueID(), compound, () -> this.writePlayerData(player));
+            ci.cancel();
+        } else {
+            SaveWriter.awaitPending();
+        }
+    }
+
+    @Inject(method = "readPlayerData", at = @At("HEAD"))
+    private void onReadPlayerData(EntityPlayer player, CallbackInfoReturnable<NBTTagCompound> cir) {
+        // Don't read outdated data if the player logs in again before the data was written
+        if (SaveWriter.isPending(player.getUniqueID())) {
+            SaveWriter.awaitPending();
+        }
+    }
+
+    @Redirect(method = "writePlayerData", at = @At(value = "INVOKE",
+            target = "Lnet/minecraft/entity/player/EntityPlayer;writeToNBT(Lnet/minecraft/nbt/NBTTagCompound;)V"))
+    private void onWritePlayerNBT(EntityPlayer player, NBTTagCompound compound) {
+        final NBTTagCompound snapshot = SaveWriter.getSnapshot();
+        if (snapshot == null) {
+            player.writeToNBT(compound);
+            return;
+        }
+
+        // Use the data serialized on the main thread, the player is only used for the name and UUID of the file
+        for (String key : snapshot.getKeySet()) {
+            compound.setTag(key, snapshot.getTag(key));
+        }
+    }
+
+    @Redirect(method = "writePlayerData", at = @At(value = "INVOKE", target = "Ljava/io/File;delete()Z", remap = false))
+    private boolean onDeletePlayerData(File file) {
+        // The rename replaces the file atomically on POSIX systems, don't delete it before the new file is in place
+        return ATOMIC_RENAME || file.delete();
+    }
+
 }
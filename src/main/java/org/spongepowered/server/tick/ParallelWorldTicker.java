@@ -0,0 +1,192 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.tick;
+
+import net.minecraft.util.ReportedException;
+import org.spongepowered.common.SpongeImpl;
+import org.spongepowered.server.world.TickedWorld;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Ticks independent worlds concurrently on a fork-join pool.
+ *
+ * <p>The main thread hands over all worlds that should be ticked and waits
+ * until all of them have finished (the barrier). Operations that touch more
+ * than one world (e.g. entities travelling to another dimension) are
+ * deferred using {@link #defer(Runnable)} and run on the main thread once
+ * all worlds have been ticked.</p>
+ *
+ * <p>Vanilla state that is shared by all worlds is either deferred as well
+ * (e.g. the scoreboard), kept per thread or world (e.g. the state of the
+ * redstone wire and redstone torch blocks), or guarded by a single lock
+ * held by the world tick threads (e.g. the flag that makes blocks fall
+ * instantly during chunk population). Using a single lock avoids deadlocks
+ * when these paths call each other.</p>
+ */
+public final class ParallelWorldTicker {
+
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+
+    private static final Queue<Runnable> deferredTasks = new ConcurrentLinkedQueue<>();
+    private static final ReentrantLock sharedStateLock = new ReentrantLock();
+
+    private final ForkJoinPool pool;
+
+    public ParallelWorldTicker(int threads) {
+        this.pool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors(), WorldTickThread::new,
+                (thread, e) -> SpongeImpl.getLogger().error("Uncaught exception in {}", thread.getName(), e), false);
+    }
+
+    /**
+     * Returns whether the current thread is ticking a world in parallel to
+     * other worlds.
+     *
+     * @return True if called from a world tick thread
+     */
+    public static boolean isWorldTickThread() {
+        return Thread.currentThread() instanceof WorldTickThread;
+    }
+
+    /**
+     * Runs the specified task after all worlds have finished ticking if
+     * called from a world tick thread.
+     *
+     * @param task The task to run
+     * @return True if the task was deferred, false if the caller should
+     *     run it immediately
+     */
+    public static boolean defer(Runnable task) {
+        if (isWorldTickThread()) {
+            deferredTasks.add(task);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Acquires the lock for Vanilla state shared by all worlds if called
+     * from a world tick thread. Must be followed by a call to
+     * {@link #unlockSharedState()} in a finally block.
+     */
+    public static void lockSharedState() {
+        if (isWorldTickThread()) {
+            sharedStateLock.lock();
+        }
+    }
+
+    /**
+     * Releases the lock acquired by {@link #lockSharedState()}.
+     */
+    public static void unlockSharedState() {
+        if (isWorldTickThread()) {
+            sharedStateLock.unlock();
+        }
+    }
+
+    /**
+     * Ticks the specified worlds in parallel and blocks until all of them
+     * have been ticked.
+     *
+     * @param worlds The worlds to tick
+     * @param ticker The function that ticks a single world
+     * @throws ReportedException If ticking any of the worlds has failed
+     */
+    public void tick(List<TickedWorld> worlds, Consumer<TickedWorld> ticker) {
+        if (worlds.size() == 1) {
+            // Nothing to parallelize
+            ticker.accept(worlds.get(0));
+            return;
+        }
+
+        final ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[worlds.size()];
+        for (int i = 0; i < tasks.length; i++) {
+            final TickedWorld world = worlds.get(i);
+            tasks[i] = this.pool.submit(() -> ticker.accept(world));
+        }
+
+        // Wait for all worlds before reporting the first failure
+        ReportedException failure = null;
+        for (ForkJoinTask<?> task : tasks) {
+            try {
+                task.join();
+            } catch (ReportedException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Runs all tasks that were deferred while the worlds were ticking. Must
+     * be called from the main thread.
+     */
+    public static void runDeferredTasks() {
+        Runnable task;
+        while ((task = deferredTasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (ReportedException e) {
+                throw e;
+            } catch (Throwable e) {
+                SpongeImpl.getLogger().error("Failed to run deferred world task", e);
+            }
+        }
+    }
+
+    public void shutdown() {
+        this.pool.shutdown();
+        try {
+            this.pool.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class WorldTickThread extends ForkJoinWorkerThread {
+
+        WorldTickThread(ForkJoinPool pool) {
+            super(pool);
+            setName("Server World Ticker #" + threadCounter.incrementAndGet());
+            setDaemon(true);
+        }
+
+    }
+
+}
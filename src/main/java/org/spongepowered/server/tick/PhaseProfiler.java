@@ -0,0 +1,82 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.tick;
+
+import org.spongepowered.api.world.World;
+import org.spongepowered.server.world.TickedWorld;
+import org.spongepowered.server.world.VanillaDimensionManager;
+
+import java.util.Optional;
+
+/**
+ * Always-on timings of the phases of each server tick.
+ *
+ * <p>Unlike the Vanilla debug profiler, this only measures a few phases per
+ * tick and records them into preallocated histograms, so it can be kept
+ * enabled in production to find out which phase caused a lag spike.</p>
+ */
+public final class PhaseProfiler {
+
+    private static final PhaseTimings serverTimings = new PhaseTimings(false);
+
+    private PhaseProfiler() {
+    }
+
+    /**
+     * Returns the timings of the phases that are not specific to a world.
+     *
+     * @return The server phase timings
+     */
+    public static PhaseTimings getServerTimings() {
+        return serverTimings;
+    }
+
+    /**
+     * Returns the timings of the phases of the specified world.
+     *
+     * @param world The world
+     * @return The world phase timings, or {@link Optional#empty()} if the
+     *     world is not loaded
+     */
+    public static Optional<PhaseTimings> getTimings(World world) {
+        for (TickedWorld ticked : VanillaDimensionManager.getTickedWorlds()) {
+            if (ticked.getWorld() == world) {
+                return Optional.of(ticked.getTimings());
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Clears the timings of the server and all loaded worlds.
+     */
+    public static void reset() {
+        serverTimings.reset();
+        for (TickedWorld ticked : VanillaDimensionManager.getTickedWorlds()) {
+            ticked.getTimings().reset();
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.tick;
+
+import java.util.Optional;
+
+import javax.annotation.Nullable;
+
+/**
+ * The histograms of the {@link TickPhase}s of either the whole server or a
+ * single world.
+ */
+public final class PhaseTimings {
+
+    private final PhaseHistogram[] histograms = new PhaseHistogram[TickPhase.values().length];
+
+    public PhaseTimings(boolean perWorld) {
+        for (TickPhase phase : TickPhase.values()) {
+            if (phase.isPerWorld() == perWorld) {
+                this.histograms[phase.ordinal()] = new PhaseHistogram();
+            }
+        }
+    }
+
+    public void record(TickPhase phase, long nanos) {
+        final PhaseHistogram histogram = this.histograms[phase.ordinal()];
+        if (histogram != null) {
+            histogram.record(nanos);
+        }
+    }
+
+    /**
+     * Returns the histogram for the specified phase.
+     *
+     * @param phase The tick phase
+     * @return The histogram, or {@link Optional#empty()} if the phase is not
+     *     timed here (e.g. per world phases for the whole server)
+     */
+    public Optional<PhaseHistogram> getHistogram(TickPhase phase) {
+        return Optional.ofNullable(this.histograms[phase.ordinal()]);
+    }
+
+    public void reset() {
+        for (@Nullable PhaseHistogram histogram : this.histograms) {
+            if (histogram != null) {
+                histogram.reset();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.tick;
+
+import net.minecraft.util.Util;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The queue for tasks that are scheduled to run on the main thread from
+ * other threads (e.g. packet handlers or asynchronous plugin tasks).
+ *
+ * <p>Any number of threads may add tasks without locking, but only the main
+ * thread may run them. Each tick, the queued tasks are run until the
+ * configured time budget is exhausted. The remaining tasks are kept for the
+ * next tick. Without a budget, the queue is drained until it is empty like
+ * in Vanilla.</p>
+ */
+public final class ScheduledTaskQueue {
+
+    private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    // Metrics of the last tick, only written by the main thread
+    private volatile int lastExecuted;
+    private volatile long lastDrainTime;
+    private volatile long lastMeanWaitTime;
+    private volatile long lastMaxWaitTime;
+    private volatile long totalExecuted;
+
+    public void add(FutureTask<?> task) {
+        this.queue.add(new Entry(task, System.nanoTime()));
+        this.size.incrementAndGet();
+    }
+
+    /**
+     * Runs the queued tasks. With a budget, tasks added while running the
+     * queue are only run in the next tick. Without a budget, they are run
+     * until the queue is empty.
+     *
+     * @param budget The maximum time in nanoseconds to spend running tasks,
+     *     or zero to run all of them
+     * @param logger The logger for exceptions thrown by the tasks
+     */
+    public void run(long budget, Logger logger) {
+        final long start = System.nanoTime();
+        int remaining = this.size.get();
+        int executed = 0;
+        long totalWait = 0;
+        long maxWait = 0;
+
+        long now = start;
+        Entry entry;
+        while ((budget <= 0 || remaining-- > 0) && (entry = this.queue.poll()) != null) {
+            this.size.decrementAndGet();
+
+            final long wait = now - entry.queued;
+            totalWait += wait;
+            if (wait > maxWait) {
+                maxWait = wait;
+            }
+
+            Util.runTask(entry.task, logger);
+            executed++;
+
+            now = System.nanoTime();
+            if (budget > 0 && now - start >= budget) {
+                break;
+            }
+        }
+
+        this.lastExecuted = executed;
+        this.lastDrainTime = now - start;
+        this.lastMeanWaitTime = executed > 0 ? totalWait / executed : 0;
+        this.lastMaxWaitTime = maxWait;
+        this.totalExecuted += executed;
+    }
+
+    /**
+     * Returns the number of tasks waiting to be run.
+     *
+     * @return The queue depth
+     */
+    public int size() {
+        return this.size.get();
+    }
+
+    public int getLastExecuted() {
+        return this.lastExecuted;
+    }
+
+    public long getLastDrainTime() {
+        return this.lastDrainTime;
+    }
+
+    public long getLastMeanWaitTime() {
+        return this.lastMeanWaitTime;
+    }
+
+    public long getLastMaxWaitTime() {
+        return this.lastMaxWaitTime;
+    }
+
+    public long getTotalExecuted() {
+        return this.totalExecuted;
+    }
+
+    private static final class Entry {
+
+        final FutureTask<?> task;
+        final long queued;
+
+        Entry(FutureTask<?> task, long queued) {
+            this.task = task;
+            this.queued = queued;
+        }
+
+    }
+
+}
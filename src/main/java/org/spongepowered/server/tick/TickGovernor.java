@@ -0,0 +1,177 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.tick;
+
+import org.spongepowered.api.world.World;
+import org.spongepowered.server.SpongeVanilla;
+import org.spongepowered.server.config.VanillaConfig;
+import org.spongepowered.server.world.TickedWorld;
+import org.spongepowered.server.world.VanillaDimensionManager;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reduces the tick rate of low priority worlds while the server can't keep
+ * up with 20 ticks per second.
+ *
+ * <p>The governor keeps a moving average of the tick duration. When the TPS
+ * estimated from it drops below the configured thresholds, worlds are ticked
+ * only every 2nd or every 4th tick according to their {@link TickPolicy}.
+ * The skipped ticks are spread over the worlds by their dimension ID.</p>
+ */
+public final class TickGovernor {
+
+    public enum Pressure {
+        NONE(1),
+        MODERATE(2),
+        HIGH(4);
+
+        private final int divisor;
+
+        Pressure(int divisor) {
+            this.divisor = divisor;
+        }
+
+        public int getDivisor() {
+            return this.divisor;
+        }
+    }
+
+    private static final double SMOOTHING = 0.05;
+    private static final double HYSTERESIS = 0.5;
+
+    private static volatile double meanTickTime = 50;
+    private static volatile Pressure pressure = Pressure.NONE;
+
+    private TickGovernor() {
+    }
+
+    /**
+     * Records the duration of a complete server tick.
+     *
+     * @param nanos The tick duration in nanoseconds
+     */
+    public static void recordTick(long nanos) {
+        meanTickTime += (nanos / (double) TimeUnit.MILLISECONDS.toNanos(1) - meanTickTime) * SMOOTHING;
+
+        final VanillaConfig.GovernorCategory config = SpongeVanilla.INSTANCE.getConfig().getGovernor();
+        if (!config.isEnabled()) {
+            pressure = Pressure.NONE;
+            return;
+        }
+
+        final double tps = getEstimatedTps();
+        if (tps < config.getHighTps() || (pressure == Pressure.HIGH && tps < config.getHighTps() + HYSTERESIS)) {
+            pressure = Pressure.HIGH;
+        } else if (tps < config.getModerateTps() || (pressure != Pressure.NONE && tps < config.getModerateTps() + HYSTERESIS)) {
+            pressure = Pressure.MODERATE;
+        } else {
+            pressure = Pressure.NONE;
+        }
+    }
+
+    /**
+     * Decides whether the world should be ticked in the current tick and
+     * updates its governor metrics.
+     *
+     * @param ticked The world
+     * @param tickCounter The current tick
+     * @return True if the world should be ticked
+     */
+    public static boolean shouldTick(TickedWorld ticked, int tickCounter) {
+        final int divisor = getDivisor(ticked);
+        ticked.setTickDivisor(divisor);
+        if (divisor == 1 || (tickCounter + ticked.getDimensionId()) % divisor == 0) {
+            return true;
+        }
+
+        ticked.addSkippedTick();
+        return false;
+    }
+
+    private static int getDivisor(TickedWorld ticked) {
+        final Pressure pressure = TickGovernor.pressure;
+        if (pressure == Pressure.NONE) {
+            return 1;
+        }
+
+        switch (ticked.getPolicy()) {
+            case LOW:
+                return pressure.getDivisor();
+            case NORMAL:
+                return ticked.getWorld().playerEntities.isEmpty() ? pressure.getDivisor() : 1;
+            default:
+                return 1;
+        }
+    }
+
+    public static double getMeanTickTime() {
+        return meanTickTime;
+    }
+
+    public static double getEstimatedTps() {
+        return Math.min(20, 1000 / Math.max(meanTickTime, 1));
+    }
+
+    public static Pressure getPressure() {
+        return pressure;
+    }
+
+    /**
+     * Returns the tick policy of the specified world.
+     *
+     * @param world The world
+     * @return The tick policy, or {@link Optional#empty()} if the world is
+     *     not loaded
+     */
+    public static Optional<TickPolicy> getPolicy(World world) {
+        for (TickedWorld ticked : VanillaDimensionManager.getTickedWorlds()) {
+            if (ticked.getWorld() == world) {
+                return Optional.of(ticked.getPolicy());
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Sets the tick policy of the specified world until it is unloaded. Use
+     * the configuration to set the policy permanently.
+     *
+     * @param world The world
+     * @param policy The new tick policy
+     * @return False if the world is not loaded
+     */
+    public static boolean setPolicy(World world, TickPolicy policy) {
+        for (TickedWorld ticked : VanillaDimensionManager.getTickedWorlds()) {
+            if (ticked.getWorld() == world) {
+                ticked.setPolicy(policy);
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.tick;
+
+/**
+ * The phases of a server tick that are timed by the {@link PhaseProfiler}.
+ * The names match the sections of the Vanilla profiler.
+ */
+public enum TickPhase {
+
+    /**
+     * Running the tasks scheduled from other threads.
+     */
+    JOBS("jobs", false),
+
+    /**
+     * Sending the time updates to the players that are due this tick.
+     */
+    TIME_SYNC("timeSync", false),
+
+    /**
+     * Ticking all worlds.
+     */
+    LEVELS("levels", false),
+
+    /**
+     * Ticking the world itself (weather, block ticks, chunk unloading, ...).
+     */
+    TICK("tick", true),
+
+    /**
+     * Updating the entities and tile entities in a world.
+     */
+    ENTITIES("entities", true),
+
+    /**
+     * Updating the entity tracker of a world.
+     */
+    TRACKER("tracker", true),
+
+    /**
+     * Loading the spawn area of worlds that are loaded asynchronously.
+     */
+    DIM_LOADING("dim_loading", false),
+
+    /**
+     * Unloading and saving worlds that were requested to be unloaded.
+     */
+    DIM_UNLOADING("dim_unloading", false),
+
+    /**
+     * Saving the modified chunks that are due this tick.
+     */
+    AUTOSAVE("autosave", false),
+
+    /**
+     * Pre-generating chunks.
+     */
+    PREGEN("pregen", false),
+
+    /**
+     * Processing the network connections.
+     */
+    CONNECTION("connection", false),
+
+    /**
+     * Updating the player list.
+     */
+    PLAYERS("players", false),
+
+    /**
+     * Updating the other tickables (e.g. the server GUI).
+     */
+    TICKABLES("tickables", false);
+
+    private final String name;
+    private final boolean perWorld;
+
+    TickPhase(String name, boolean perWorld) {
+        this.name = name;
+        this.perWorld = perWorld;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Returns whether this phase is timed separately for each world.
+     *
+     * @return True if the phase is per world
+     */
+    public boolean isPerWorld() {
+        return this.perWorld;
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.tick;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.Nullable;
+
+/**
+ * A ring buffer of tick times with a single writer (the thread ticking the
+ * world) and any number of concurrent readers.
+ *
+ * <p>Recording a tick time is wait-free and does not allocate. Readers
+ * never block the writer: they copy the requested samples and discard the
+ * ones that were overwritten while copying.</p>
+ */
+public final class TickTimeBuffer {
+
+    private final AtomicLongArray samples;
+    private final int mask;
+
+    // The total number of samples that have been recorded
+    private final AtomicLong written = new AtomicLong();
+
+    // The array exposed through IMixinMinecraftServer.getWorldTickTimes()
+    @Nullable private final long[] legacySamples;
+
+    TickTimeBuffer(int capacity, @Nullable long[] legacySamples) {
+        checkArgument(capacity > 0, "capacity must be positive");
+        final int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.samples = new AtomicLongArray(size > 0 ? size : 1);
+        this.mask = this.samples.length() - 1;
+        this.legacySamples = legacySamples;
+    }
+
+    public int getCapacity() {
+        return this.samples.length();
+    }
+
+    /**
+     * Records the duration of a tick. Must only be called from a single
+     * thread at a time.
+     *
+     * @param nanos The tick time in nanoseconds
+     */
+    public void record(long nanos) {
+        // Only the writer modifies the counter, so there is no need for a CAS
+        final long index = this.written.get();
+        this.samples.lazySet((int) (index & this.mask), nanos);
+        this.written.lazySet(index + 1);
+
+        if (this.legacySamples != null) {
+            this.legacySamples[(int) (index % this.legacySamples.length)] = nanos;
+        }
+    }
+
+    /**
+     * Returns a copy of the most recently recorded tick times, oldest first.
+     *
+     * @param window The maximum number of samples to return
+     * @return The recorded tick times in nanoseconds
+     */
+    public long[] snapshot(int window) {
+        checkArgument(window > 0, "window must be positive");
+
+        final long end = this.written.get();
+        final long start = Math.max(0, end - Math.min(window, this.samples.length()));
+
+        final long[] result = new long[(int) (end - start)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = this.samples.get((int) ((start + i) & this.mask));
+        }
+
+        // Samples the writer has reached again in the meantime may be newer than expected
+        final long firstValid = this.written.get() - this.samples.length() + 1;
+        if (start < firstValid) {
+            return Arrays.copyOfRange(result, (int) Math.min(firstValid - start, result.length), result.length);
+        }
+        return result;
+    }
+
+    /**
+     * Calculates statistics over the most recently recorded tick times.
+     *
+     * @param window The maximum number of ticks to include
+     * @return The statistics for the tick times
+     */
+    public TickTimeStatistics getStatistics(int window) {
+        return TickTimeStatistics.of(snapshot(window));
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.tick;
+
+import com.google.common.base.MoreObjects;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Summary statistics of a series of tick times. All durations are in
+ * nanoseconds.
+ */
+public final class TickTimeStatistics {
+
+    private static final TickTimeStatistics EMPTY = new TickTimeStatistics(0, 0, 0, 0, 0, 0);
+
+    private final int samples;
+    private final long mean;
+    private final long p50;
+    private final long p95;
+    private final long p99;
+    private final long max;
+
+    private TickTimeStatistics(int samples, long mean, long p50, long p95, long p99, long max) {
+        this.samples = samples;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p95 = p95;
+        this.p99 = p99;
+        this.max = max;
+    }
+
+    static TickTimeStatistics of(long[] tickTimes) {
+        if (tickTimes.length == 0) {
+            return EMPTY;
+        }
+
+        final long[] sorted = tickTimes.clone();
+        Arrays.sort(sorted);
+
+        long sum = 0;
+        for (long time : sorted) {
+            sum += time;
+        }
+
+        return new TickTimeStatistics(sorted.length, sum / sorted.length, percentile(sorted, 50), percentile(sorted, 95),
+                percentile(sorted, 99), sorted[sorted.length - 1]);
+    }
+
+    // Nearest-rank percentile
+    private static long percentile(long[] sorted, int percentile) {
+        final int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(rank - 1, 0)];
+    }
+
+    public int getSamples() {
+        return this.samples;
+    }
+
+    public long getMean() {
+        return this.mean;
+    }
+
+    public long getP50() {
+        return this.p50;
+    }
+
+    public long getP95() {
+        return this.p95;
+    }
+
+    public long getP99() {
+        return this.p99;
+    }
+
+    public long getMax() {
+        return this.max;
+    }
+
+    /**
+     * Returns the ticks per second the mean tick time allows for, capped at
+     * the 20 ticks per second the server runs at.
+     *
+     * @return The ticks per second
+     */
+    public double getTps() {
+        return this.mean > 0 ? Math.min(TimeUnit.SECONDS.toNanos(1) / (double) this.mean, 20) : 20;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("samples", this.samples)
+                .add("mean", this.mean)
+                .add("p50", this.p50)
+                .add("p95", this.p95)
+                .add("p99", this.p99)
+                .add("max", this.max)
+                .toString();
+    }
+
+}
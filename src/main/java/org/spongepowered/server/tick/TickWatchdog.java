@@ -0,0 +1,240 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.tick;
+
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.plugin.PluginContainer;
+import org.spongepowered.common.SpongeImpl;
+import org.spongepowered.server.plugin.VanillaPluginContainer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+/**
+ * Watches the duration of each tick and samples the stack of the main thread
+ * while a tick takes longer than the configured threshold.
+ *
+ * <p>The samples are written in the collapsed stack format used by flame
+ * graph tools, with the world and phase of the tick as the root frames.
+ * The header of the file lists the plugins found on the sampled stacks.</p>
+ */
+public final class TickWatchdog implements Runnable {
+
+    private static final Path STALLS_DIR = Paths.get("logs", "stalls");
+
+    private final Thread mainThread;
+    private final long threshold;
+    private final long sampleInterval;
+    private final long maxDuration;
+    private final Thread thread;
+
+    private volatile boolean running = true;
+    private volatile long tickStart;
+    private volatile TickPhase phase = TickPhase.JOBS;
+    @Nullable private volatile String world;
+
+    @Nullable private Map<String, String> pluginPackages;
+    // The start of the last sampled tick, only accessed by the watchdog thread
+    private long lastSampled;
+
+    public TickWatchdog(Thread mainThread, long threshold, long sampleInterval, long maxDuration) {
+        this.mainThread = mainThread;
+        this.threshold = TimeUnit.MILLISECONDS.toNanos(threshold);
+        this.sampleInterval = Math.max(sampleInterval, 1);
+        this.maxDuration = TimeUnit.MILLISECONDS.toNanos(maxDuration);
+
+        this.thread = new Thread(this, "Server Tick Watchdog");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public void startTick() {
+        this.tickStart = System.nanoTime();
+    }
+
+    public void endTick() {
+        this.tickStart = 0;
+    }
+
+    /**
+     * Sets the phase the main thread is currently in.
+     *
+     * @param phase The current tick phase
+     * @param world The name of the world that is ticked, or null if the
+     *     phase is not specific to a world
+     */
+    public void enterPhase(TickPhase phase, @Nullable String world) {
+        this.phase = phase;
+        this.world = world;
+    }
+
+    public void shutdown() {
+        this.running = false;
+        this.thread.interrupt();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (this.running) {
+                final long start = this.tickStart;
+                if (start == 0 || start == this.lastSampled) {
+                    // Idle or the stalled tick was already sampled for the maximum duration
+                    Thread.sleep(Math.max(TimeUnit.NANOSECONDS.toMillis(this.threshold) / 4, 1));
+                    continue;
+                }
+
+                final long elapsed = System.nanoTime() - start;
+                if (elapsed < this.threshold) {
+                    Thread.sleep(Math.max(TimeUnit.NANOSECONDS.toMillis(this.threshold - elapsed), 1));
+                    continue;
+                }
+
+                sample(start);
+                this.lastSampled = start;
+            }
+        } catch (InterruptedException ignored) {
+            // Shutting down
+        }
+    }
+
+    private void sample(long start) throws InterruptedException {
+        SpongeImpl.getLogger().warn("The current tick is taking longer than {}ms (phase {}, world {}), sampling the main thread...",
+                TimeUnit.NANOSECONDS.toMillis(this.threshold), this.phase.getName(), this.world != null ? this.world : "none");
+
+        final Map<String, Integer> stacks = new HashMap<>();
+        final Map<String, Integer> plugins = new HashMap<>();
+        int samples = 0;
+
+        while (this.tickStart == start && System.nanoTime() - start < this.maxDuration) {
+            final String world = this.world;
+            final StringBuilder builder = new StringBuilder();
+            builder.append("[phase ").append(this.phase.getName()).append(']');
+            if (world != null) {
+                builder.append(";[world ").append(world).append(']');
+            }
+
+            final StackTraceElement[] stack = this.mainThread.getStackTrace();
+            String plugin = null;
+            for (int i = stack.length - 1; i >= 0; i--) {
+                final StackTraceElement element = stack[i];
+                builder.append(';').append(element.getClassName()).append('.').append(element.getMethodName());
+
+                final String owner = findPlugin(element.getClassName());
+                if (owner != null) {
+                    plugin = owner; // Keep the innermost plugin
+                }
+            }
+
+            if (this.tickStart != start) {
+                break; // The tick has finished while the stack was collected
+            }
+
+            stacks.merge(builder.toString(), 1, Integer::sum);
+            if (plugin != null) {
+                plugins.merge(plugin, 1, Integer::sum);
+            }
+            samples++;
+
+            Thread.sleep(this.sampleInterval);
+        }
+
+        final long duration = System.nanoTime() - start;
+        if (samples > 0) {
+            write(duration, samples, stacks, plugins);
+        }
+    }
+
+    private void write(long duration, int samples, Map<String, Integer> stacks, Map<String, Integer> plugins) {
+        final Path file = STALLS_DIR.resolve("stall-" + new SimpleDateFormat("yyyy-MM-dd_HH.mm.ss").format(new Date()) + ".txt");
+        try {
+            Files.createDirectories(STALLS_DIR);
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                writer.write("# Tick took at least " + TimeUnit.NANOSECONDS.toMillis(duration) + "ms, " + samples + " samples every "
+                        + this.sampleInterval + "ms");
+                writer.newLine();
+                if (plugins.isEmpty()) {
+                    writer.write("# No plugins found on the sampled stacks");
+                    writer.newLine();
+                } else {
+                    for (Map.Entry<String, Integer> entry : plugins.entrySet()) {
+                        writer.write("# Plugin " + entry.getKey() + " on the stack in " + entry.getValue() + " samples");
+                        writer.newLine();
+                    }
+                }
+
+                for (Map.Entry<String, Integer> entry : stacks.entrySet()) {
+                    writer.write(entry.getKey() + ' ' + entry.getValue());
+                    writer.newLine();
+                }
+            }
+
+            SpongeImpl.getLogger().warn("A tick took at least {}ms, wrote {} stack samples of the main thread to {}",
+                    TimeUnit.NANOSECONDS.toMillis(duration), samples, file);
+        } catch (IOException e) {
+            SpongeImpl.getLogger().error("Failed to write stack samples to {}", file, e);
+        }
+    }
+
+    @Nullable
+    private String findPlugin(String className) {
+        if (this.pluginPackages == null) {
+            // Plugins may share a package, the first plugin is reported for it
+            final Map<String, String> packages = new HashMap<>();
+            for (PluginContainer plugin : Sponge.getPluginManager().getPlugins()) {
+                // Only actual plugins, the implementation containers would match the whole server
+                if (plugin instanceof VanillaPluginContainer && plugin.getInstance().isPresent()) {
+                    final Package pluginPackage = plugin.getInstance().get().getClass().getPackage();
+                    if (pluginPackage != null) {
+                        packages.putIfAbsent(pluginPackage.getName() + '.', plugin.getId());
+                    }
+                }
+            }
+            this.pluginPackages = packages;
+        }
+
+        String result = null;
+        int length = 0;
+        for (Map.Entry<String, String> entry : this.pluginPackages.entrySet()) {
+            if (entry.getKey().length() > length && className.startsWith(entry.getKey())) {
+                result = entry.getValue();
+                length = entry.getKey().length();
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.tick;
+
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import net.minecraft.world.WorldServer;
+import org.spongepowered.api.world.World;
+import org.spongepowered.server.SpongeVanilla;
+
+import java.util.Optional;
+
+import javax.annotation.Nullable;
+
+/**
+ * Provides access to the recent tick times of all loaded worlds.
+ *
+ * <p>The tick times are recorded by the main thread (or the world tick
+ * thread) without any locking, see {@link TickTimeBuffer}. They can be safely read from any thread,
+ * e.g. to calculate the TPS of a world asynchronously.</p>
+ */
+public final class WorldTickTimes {
+
+    /**
+     * The number of ticks in one second.
+     */
+    public static final int SECOND = 20;
+
+    /**
+     * The number of ticks in one minute.
+     */
+    public static final int MINUTE = 60 * SECOND;
+
+    private static final Object lock = new Object();
+
+    // Copy-on-write, worlds are only registered when they are loaded or unloaded
+    private static volatile TIntObjectMap<TickTimeBuffer> buffers = new TIntObjectHashMap<>();
+
+    private WorldTickTimes() {
+    }
+
+    public static TickTimeBuffer register(int dimensionId, @Nullable long[] legacySamples) {
+        final TickTimeBuffer buffer = new TickTimeBuffer(SpongeVanilla.INSTANCE.getConfig().getTick().getTickTimeHistory(), legacySamples);
+        synchronized (lock) {
+            final TIntObjectMap<TickTimeBuffer> copy = new TIntObjectHashMap<>(buffers);
+            copy.put(dimensionId, buffer);
+            buffers = copy;
+        }
+        return buffer;
+    }
+
+    public static void unregister(int dimensionId) {
+        synchronized (lock) {
+            final TIntObjectMap<TickTimeBuffer> copy = new TIntObjectHashMap<>(buffers);
+            copy.remove(dimensionId);
+            buffers = copy;
+        }
+    }
+
+    public static Optional<TickTimeBuffer> get(int dimensionId) {
+        return Optional.ofNullable(buffers.get(dimensionId));
+    }
+
+    public static Optional<TickTimeBuffer> get(World world) {
+        return get(((WorldServer) world).provider.getDimensionId());
+    }
+
+    /**
+     * Calculates statistics over the recent tick times of a world.
+     *
+     * @param dimensionId The dimension ID of the world
+     * @param window The number of ticks to include, e.g. {@link #MINUTE}
+     * @return The tick time statistics, or {@link Optional#empty()} if the
+     *     world is not loaded
+     */
+    public static Optional<TickTimeStatistics> getStatistics(int dimensionId, int window) {
+        return get(dimensionId).map(buffer -> buffer.getStatistics(window));
+    }
+
+    public static Optional<TickTimeStatistics> getStatistics(World world, int window) {
+        return get(world).map(buffer -> buffer.getStatistics(window));
+    }
+
+}
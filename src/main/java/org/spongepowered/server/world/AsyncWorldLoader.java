@@ -0,0 +1,231 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.world;
+
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.BlockPos;
+import net.minecraft.world.WorldServer;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.world.World;
+import org.spongepowered.api.world.storage.WorldProperties;
+import org.spongepowered.common.SpongeImpl;
+import org.spongepowered.server.SpongeVanilla;
+import org.spongepowered.server.interfaces.IMixinChunkProviderServer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads worlds without blocking the main thread until their spawn area is
+ * loaded.
+ *
+ * <p>The world is created on the main thread, but only registered and added
+ * to the tick loop once the chunks of its spawn area are loaded. The chunks
+ * are read from the region files on the chunk I/O threads if asynchronous
+ * chunk loading is enabled. Adding them to the world, including generating
+ * and populating new chunks, is limited to a time budget each tick.</p>
+ */
+public final class AsyncWorldLoader {
+
+    // The spawn area loaded by Vanilla when the server starts
+    private static final int SPAWN_RADIUS = 12;
+    private static final int MAX_PENDING_CHUNKS = 64;
+
+    // Only accessed from the main thread
+    private static final List<LoadTask> tasks = new ArrayList<>();
+
+    private AsyncWorldLoader() {
+    }
+
+    /**
+     * Loads the world with the specified properties. The returned future is
+     * completed on the main thread once the world is ticked, or with an
+     * empty result if the world could not be loaded.
+     *
+     * <p>This is the entry point for plugins that want to load a world
+     * without blocking the server. {@link org.spongepowered.api.Server#loadWorld}
+     * registers and ticks the world right away, its spawn chunks are then
+     * loaded synchronously as soon as they are used. Here it is called
+     * while worlds are staged instead, so only the world itself is created
+     * synchronously. The {@code /sv worlds load} command uses it as well.
+     * Can be called from any thread.</p>
+     *
+     * @param properties The properties of the world to load
+     * @return The future that is completed with the loaded world
+     */
+    public static CompletableFuture<Optional<World>> loadWorld(WorldProperties properties) {
+        final CompletableFuture<Optional<World>> future = new CompletableFuture<>();
+        // Always create the world in a later tick, so the caller is not blocked
+        MinecraftServer.getServer().addScheduledTask(() -> {
+            final Optional<World> loaded = Sponge.getServer().getWorld(properties.getUniqueId());
+            if (loaded.isPresent()) {
+                future.complete(loaded);
+                return;
+            }
+
+            for (LoadTask task : tasks) {
+                if (((WorldProperties) task.world.getWorldInfo()).getUniqueId().equals(properties.getUniqueId())) {
+                    // Already being loaded
+                    task.future.whenComplete((world, e) -> {
+                        if (e != null) {
+                            future.completeExceptionally(e);
+                        } else {
+                            future.complete(world);
+                        }
+                    });
+                    return;
+                }
+            }
+
+            final Optional<World> world;
+            VanillaDimensionManager.setStaging(true);
+            try {
+                world = Sponge.getServer().loadWorld(properties);
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+                return;
+            } finally {
+                VanillaDimensionManager.setStaging(false);
+            }
+
+            if (world.isPresent()) {
+                tasks.add(new LoadTask((WorldServer) world.get(), properties.doesKeepSpawnLoaded(), future));
+            } else {
+                future.complete(world);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Returns the number of worlds that are still being loaded.
+     *
+     * @return The number of loading worlds
+     */
+    public static int getLoadingCount() {
+        return tasks.size();
+    }
+
+    public static void tick() {
+        if (tasks.isEmpty()) {
+            return;
+        }
+
+        final long deadline = System.nanoTime()
+                + (long) (SpongeVanilla.INSTANCE.getConfig().getWorld().getWorldLoadTickBudget() * TimeUnit.MILLISECONDS.toNanos(1));
+        for (Iterator<LoadTask> itr = tasks.iterator(); itr.hasNext(); ) {
+            final LoadTask task = itr.next();
+            final int dimensionId = task.world.provider.getDimensionId();
+            if (VanillaDimensionManager.getStagedWorld(dimensionId) != task.world) {
+                // Unloaded in the meantime
+                itr.remove();
+                task.future.complete(Optional.empty());
+            } else if (task.load(deadline)) {
+                itr.remove();
+                VanillaDimensionManager.activateWorld(dimensionId);
+                SpongeImpl.getLogger().debug("Loaded world {} with {} spawn chunks in {}ms", task.world.getWorldInfo().getWorldName(),
+                        task.chunks.length / 2, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - task.start));
+                task.future.complete(Optional.of((World) task.world));
+            }
+        }
+    }
+
+    private static final class LoadTask {
+
+        final WorldServer world;
+        final CompletableFuture<Optional<World>> future;
+        final long start = System.nanoTime();
+
+        // The coordinates of the spawn chunks, closest to the spawn first
+        final int[] chunks;
+        private int index;
+        private int added;
+        // The reads of the requested chunks that were not added yet, in the order of the chunks
+        private final Deque<CompletableFuture<?>> reads = new ArrayDeque<>();
+
+        LoadTask(WorldServer world, boolean keepSpawnLoaded, CompletableFuture<Optional<World>> future) {
+            this.world = world;
+            this.future = future;
+
+            if (!keepSpawnLoaded) {
+                this.chunks = new int[0];
+                return;
+            }
+
+            final BlockPos spawn = world.getSpawnPoint();
+            final int centerX = spawn.getX() >> 4;
+            final int centerZ = spawn.getZ() >> 4;
+            final int size = SPAWN_RADIUS * 2 + 1;
+            this.chunks = new int[size * size * 2];
+
+            // Spiral outwards in rings around the center chunk
+            int i = 0;
+            for (int ring = 0; ring <= SPAWN_RADIUS; ring++) {
+                for (int x = -ring; x <= ring; x++) {
+                    for (int z = -ring; z <= ring; z++) {
+                        if (Math.max(Math.abs(x), Math.abs(z)) == ring) {
+                            this.chunks[i++] = centerX + x;
+                            this.chunks[i++] = centerZ + z;
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Requests the remaining spawn chunks and adds the chunks that were
+         * read to the world until the deadline has passed.
+         *
+         * @param deadline The deadline as {@link System#nanoTime()}
+         * @return True if all spawn chunks are loaded
+         */
+        boolean load(long deadline) {
+            final IMixinChunkProviderServer provider = (IMixinChunkProviderServer) this.world.theChunkProviderServer;
+            while (this.index < this.chunks.length && this.reads.size() < MAX_PENDING_CHUNKS) {
+                final int x = this.chunks[this.index++];
+                final int z = this.chunks[this.index++];
+                this.reads.add(provider.readChunkAsync(x, z));
+            }
+
+            // Adding a chunk may generate and populate it, so the deadline is checked before each chunk
+            while (!this.reads.isEmpty() && this.reads.peek().isDone() && System.nanoTime() < deadline) {
+                this.reads.remove();
+                final int x = this.chunks[this.added++];
+                final int z = this.chunks[this.added++];
+                this.world.theChunkProviderServer.loadChunk(x, z);
+            }
+
+            return this.added >= this.chunks.length;
+        }
+
+    }
+
+}
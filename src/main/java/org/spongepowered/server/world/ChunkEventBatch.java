@@ -0,0 +1,75 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.world;
+
+import org.spongepowered.api.event.cause.Cause;
+import org.spongepowered.api.event.cause.NamedCause;
+import org.spongepowered.api.world.Chunk;
+import org.spongepowered.api.world.World;
+import org.spongepowered.common.SpongeImpl;
+import org.spongepowered.server.event.BatchedChunkEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the chunks loaded and unloaded in a world during a tick to post
+ * them as a single {@link BatchedChunkEvent} per type.
+ */
+public final class ChunkEventBatch {
+
+    private final List<Chunk> loaded = new ArrayList<>();
+    private final List<Chunk> unloaded = new ArrayList<>();
+
+    public void addLoaded(Chunk chunk) {
+        this.loaded.add(chunk);
+    }
+
+    public void addUnloaded(Chunk chunk) {
+        this.unloaded.add(chunk);
+    }
+
+    /**
+     * Posts the events for the collected chunks, if any, and clears them.
+     *
+     * @param world The world of the chunks
+     */
+    public void post(World world) {
+        if (this.loaded.isEmpty() && this.unloaded.isEmpty()) {
+            return;
+        }
+
+        final Cause cause = Cause.of(NamedCause.source(world));
+        if (!this.loaded.isEmpty()) {
+            SpongeImpl.postEvent(new BatchedChunkEvent.Load(cause, world, this.loaded));
+            this.loaded.clear();
+        }
+        if (!this.unloaded.isEmpty()) {
+            SpongeImpl.postEvent(new BatchedChunkEvent.Unload(cause, world, this.unloaded));
+            this.unloaded.clear();
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.world;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.spongepowered.server.SpongeVanilla;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+/**
+ * The thread pool that reads chunks from the region files for all worlds.
+ * Tasks with a lower priority value are run first, tasks with the same
+ * priority in the order they were submitted.
+ */
+public final class ChunkIOExecutor {
+
+    private static final AtomicLong sequence = new AtomicLong();
+    @Nullable private static volatile ThreadPoolExecutor executor;
+
+    private ChunkIOExecutor() {
+    }
+
+    public static void submit(double priority, Runnable task) {
+        getExecutor().execute(new PrioritizedTask(priority, sequence.getAndIncrement(), task));
+    }
+
+    private static ThreadPoolExecutor getExecutor() {
+        ThreadPoolExecutor result = executor;
+        if (result == null) {
+            synchronized (ChunkIOExecutor.class) {
+                result = executor;
+                if (result == null) {
+                    final int threads = Math.max(SpongeVanilla.INSTANCE.getConfig().getWorld().getChunkIOThreads(), 1);
+                    executor = result = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(),
+                            new ThreadFactoryBuilder().setNameFormat("Server Chunk I/O #%d").setDaemon(true).build());
+                }
+            }
+        }
+        return result;
+    }
+
+    private static final class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+
+        private final double priority;
+        private final long sequence;
+        private final Runnable task;
+
+        PrioritizedTask(double priority, long sequence, Runnable task) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            this.task.run();
+        }
+
+        @Override
+        public int compareTo(PrioritizedTask o) {
+            final int result = Double.compare(this.priority, o.priority);
+            return result != 0 ? result : Long.compare(this.sequence, o.sequence);
+        }
+
+    }
+
+}
@@ -0,0 +1,196 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.world;
+
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import net.minecraft.world.WorldServer;
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
+import org.spongepowered.common.SpongeImpl;
+import org.spongepowered.server.SpongeVanilla;
+import org.spongepowered.server.config.VanillaConfig;
+import org.spongepowered.server.tick.TickGovernor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pre-generates the chunks of worlds in a bounded time slice each tick.
+ *
+ * <p>The time slice shrinks when the average tick time approaches the
+ * configured maximum, so pre-generation only uses the time the server
+ * doesn't need. The progress is saved to the world directory regularly,
+ * and tasks are resumed automatically when their world is loaded again.</p>
+ */
+public final class ChunkPregenerator {
+
+    private static final String CHECKPOINT_FILE = "pregen.conf";
+    private static final long CHECKPOINT_INTERVAL = TimeUnit.SECONDS.toNanos(30);
+
+    // Only accessed from the main thread
+    private static final TIntObjectMap<PregenTask> tasks = new TIntObjectHashMap<>();
+    private static long lastCheckpoint = System.nanoTime();
+
+    private ChunkPregenerator() {
+    }
+
+    /**
+     * Starts pre-generating the chunks around the specified center chunk.
+     *
+     * @param world The world to generate
+     * @param centerX The X coordinate of the center chunk
+     * @param centerZ The Z coordinate of the center chunk
+     * @param radius The radius in chunks
+     * @return The started task
+     * @throws IllegalStateException If the world is already pre-generated
+     */
+    public static PregenTask start(WorldServer world, int centerX, int centerZ, int radius) {
+        final int dimensionId = world.provider.getDimensionId();
+        if (tasks.containsKey(dimensionId)) {
+            throw new IllegalStateException("World " + world.getWorldInfo().getWorldName() + " is already being pre-generated");
+        }
+
+        final PregenTask task = new PregenTask(world, centerX, centerZ, radius, 0);
+        tasks.put(dimensionId, task);
+        saveCheckpoint(task);
+        return task;
+    }
+
+    /**
+     * Stops pre-generating the specified world and discards its progress.
+     *
+     * @param world The world
+     * @return False if the world was not being pre-generated
+     */
+    public static boolean stop(WorldServer world) {
+        final PregenTask task = tasks.remove(world.provider.getDimensionId());
+        if (task == null) {
+            return false;
+        }
+
+        task.releaseAll();
+        deleteCheckpoint(task);
+        return true;
+    }
+
+    public static Optional<PregenTask> getTask(WorldServer world) {
+        return Optional.ofNullable(tasks.get(world.provider.getDimensionId()));
+    }
+
+    public static Collection<PregenTask> getTasks() {
+        return tasks.valueCollection();
+    }
+
+    public static void tick() {
+        if (tasks.isEmpty()) {
+            return;
+        }
+
+        final VanillaConfig.WorldCategory config = SpongeVanilla.INSTANCE.getConfig().getWorld();
+        // Only use the time that is left until the mean tick time reaches the maximum
+        final double budget = Math.min(config.getPregenTickBudget(), config.getPregenMaxTickTime() - TickGovernor.getMeanTickTime());
+        final boolean throttled = budget <= 0;
+
+        final long deadline = System.nanoTime() + (long) (Math.max(budget, 0) * TimeUnit.MILLISECONDS.toNanos(1));
+        for (PregenTask task : tasks.valueCollection().toArray(new PregenTask[tasks.size()])) {
+            task.setThrottled(throttled);
+            if (!throttled && task.generate(deadline)) {
+                tasks.remove(task.getWorld().provider.getDimensionId());
+                deleteCheckpoint(task);
+                SpongeImpl.getLogger().info("Finished pre-generating {} chunks of world {}", task.getTotal(),
+                        task.getWorld().getWorldInfo().getWorldName());
+            }
+        }
+
+        if (System.nanoTime() - lastCheckpoint >= CHECKPOINT_INTERVAL) {
+            saveCheckpoints();
+        }
+    }
+
+    /**
+     * Saves the progress of all running tasks.
+     */
+    public static void saveCheckpoints() {
+        for (PregenTask task : tasks.valueCollection()) {
+            saveCheckpoint(task);
+        }
+        lastCheckpoint = System.nanoTime();
+    }
+
+    static void onWorldLoad(int dimensionId, WorldServer world) {
+        final Path path = getCheckpointPath(world);
+        if (tasks.containsKey(dimensionId) || !Files.exists(path)) {
+            return;
+        }
+
+        try {
+            final ConfigurationNode node = HoconConfigurationLoader.builder().setPath(path).build().load();
+            final PregenTask task = PregenTask.load(world, node);
+            tasks.put(dimensionId, task);
+            SpongeImpl.getLogger().info("Resuming pre-generation of world {} at {}/{} chunks", world.getWorldInfo().getWorldName(),
+                    task.getGenerated(), task.getTotal());
+        } catch (IOException e) {
+            SpongeImpl.getLogger().error("Failed to read the pre-generation progress from {}", path, e);
+        }
+    }
+
+    static void onWorldUnload(int dimensionId) {
+        final PregenTask task = tasks.remove(dimensionId);
+        if (task != null) {
+            saveCheckpoint(task);
+        }
+    }
+
+    private static Path getCheckpointPath(WorldServer world) {
+        return world.getSaveHandler().getWorldDirectory().toPath().resolve(CHECKPOINT_FILE);
+    }
+
+    private static void saveCheckpoint(PregenTask task) {
+        final Path path = getCheckpointPath(task.getWorld());
+        try {
+            final HoconConfigurationLoader loader = HoconConfigurationLoader.builder().setPath(path).build();
+            final ConfigurationNode node = loader.createEmptyNode();
+            task.save(node);
+            loader.save(node);
+        } catch (IOException e) {
+            SpongeImpl.getLogger().error("Failed to save the pre-generation progress to {}", path, e);
+        }
+    }
+
+    private static void deleteCheckpoint(PregenTask task) {
+        final Path path = getCheckpointPath(task.getWorld());
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            SpongeImpl.getLogger().error("Failed to delete the pre-generation progress at {}", path, e);
+        }
+    }
+
+}
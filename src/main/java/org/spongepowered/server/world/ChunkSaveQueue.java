@@ -0,0 +1,115 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.world;
+
+import net.minecraft.world.chunk.Chunk;
+import org.spongepowered.server.interfaces.IMixinChunkProviderServer;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The modified chunks of a world that are saved incrementally instead of
+ * saving all chunks during the autosave.
+ *
+ * <p>The chunks are saved in the order they were modified first. Each tick,
+ * chunks are saved within a time budget, but at least as many as needed to
+ * save all queued chunks before the oldest one reaches the save interval.</p>
+ */
+public final class ChunkSaveQueue {
+
+    private static final long TICK_TIME = TimeUnit.MILLISECONDS.toNanos(50);
+
+    // The time each chunk was queued, in nanoseconds
+    private final Map<Chunk, Long> queue = new LinkedHashMap<>();
+    private long totalSaved;
+
+    public void add(Chunk chunk) {
+        if (!this.queue.containsKey(chunk)) {
+            this.queue.put(chunk, System.nanoTime());
+        }
+    }
+
+    public void remove(Chunk chunk) {
+        this.queue.remove(chunk);
+    }
+
+    public int size() {
+        return this.queue.size();
+    }
+
+    public long getTotalSaved() {
+        return this.totalSaved;
+    }
+
+    /**
+     * Saves the queued chunks that are due this tick.
+     *
+     * @param provider The chunk provider of the world
+     * @param interval The maximum time a chunk may stay queued, in
+     *     nanoseconds
+     * @param budget The time budget for saving more chunks than required,
+     *     in nanoseconds
+     * @return The number of saved chunks
+     */
+    public int save(IMixinChunkProviderServer provider, long interval, long budget) {
+        if (this.queue.isEmpty()) {
+            return 0;
+        }
+
+        final long start = System.nanoTime();
+
+        // Spread the queued chunks over the ticks until the oldest chunk must be saved
+        final long remainingTicks = Math.max((this.queue.values().iterator().next() + interval - start) / TICK_TIME, 1);
+        final long required = (this.queue.size() + remainingTicks - 1) / remainingTicks;
+
+        int processed = 0;
+        int saved = 0;
+        while (!this.queue.isEmpty()) {
+            // Saving a chunk may queue other chunks, so don't keep the iterator
+            final Iterator<Map.Entry<Chunk, Long>> itr = this.queue.entrySet().iterator();
+            final Map.Entry<Chunk, Long> entry = itr.next();
+
+            final long now = System.nanoTime();
+            if (processed >= required && now - start >= budget && now - entry.getValue() < interval) {
+                break;
+            }
+
+            itr.remove();
+            processed++;
+
+            final Chunk chunk = entry.getKey();
+            if (chunk.isLoaded() && provider.saveChunk(chunk)) {
+                saved++;
+            }
+        }
+
+        this.totalSaved += saved;
+        return saved;
+    }
+
+}
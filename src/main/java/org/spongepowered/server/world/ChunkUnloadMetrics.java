@@ -0,0 +1,80 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.world;
+
+/**
+ * Statistics about the chunks unloaded by a single world. Only written by
+ * the main thread.
+ */
+public final class ChunkUnloadMetrics {
+
+    private volatile int lastUnloaded;
+    private volatile long lastTime;
+    private volatile long totalUnloaded;
+    private volatile long totalTime;
+
+    public void record(int unloaded, long nanos) {
+        this.lastUnloaded = unloaded;
+        this.lastTime = nanos;
+        if (unloaded > 0) {
+            this.totalUnloaded += unloaded;
+            this.totalTime += nanos;
+        }
+    }
+
+    /**
+     * Returns the number of chunks that were unloaded in the last tick.
+     *
+     * @return The number of chunks unloaded in the last tick
+     */
+    public int getLastUnloaded() {
+        return this.lastUnloaded;
+    }
+
+    /**
+     * Returns the time spent on unloading chunks in the last tick.
+     *
+     * @return The unload time in nanoseconds
+     */
+    public long getLastTime() {
+        return this.lastTime;
+    }
+
+    public long getTotalUnloaded() {
+        return this.totalUnloaded;
+    }
+
+    /**
+     * Returns the number of chunks unloaded per second spent on unloading
+     * chunks, including saving them.
+     *
+     * @return The unload throughput in chunks per second
+     */
+    public double getThroughput() {
+        final long time = this.totalTime;
+        return time > 0 ? this.totalUnloaded * 1000000000.0 / time : 0;
+    }
+
+}
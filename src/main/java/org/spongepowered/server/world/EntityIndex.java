@@ -0,0 +1,262 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.world;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.TObjectLongMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.map.hash.TObjectLongHashMap;
+import net.minecraft.entity.Entity;
+import net.minecraft.util.AxisAlignedBB;
+import net.minecraft.util.MathHelper;
+
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
+/**
+ * A spatial index of the entities in the loaded chunks of a world that
+ * answers bounding box queries without scanning the entity lists of whole
+ * chunk sections.
+ *
+ * <p>The entities are grouped in cells of 8x8x8 blocks by the minimum
+ * corner of their bounding box, and moved to another cell whenever their
+ * bounding box changes. Entities larger than {@link #MAX_EXTENT} blocks
+ * are kept in a separate list that is checked by all queries.</p>
+ *
+ * <p>The index is used for the entity queries of the world, and may be
+ * used by other implementations (e.g. of the entity queries of the API)
+ * through {@link org.spongepowered.server.interfaces.IMixinWorldServer#getEntityIndex()}.
+ * Like Vanilla, the queries return the entities whose bounding box
+ * intersects with the queried box, but not necessarily in the same
+ * order.</p>
+ */
+public final class EntityIndex {
+
+    private static final int CELL_SHIFT = 3;
+    private static final double MAX_EXTENT = 4;
+
+    private static final long LARGE = Long.MIN_VALUE;
+    private static final long NOT_INDEXED = Long.MAX_VALUE;
+
+    // Only accessed from the thread ticking the world
+    private final TLongObjectMap<Set<Entity>> cells = new TLongObjectHashMap<>();
+    private final TObjectLongMap<Entity> entityCells = new TObjectLongHashMap<>(16, 0.5F, NOT_INDEXED);
+    private final Set<Entity> largeEntities = Sets.newLinkedHashSet();
+    private final boolean enabled;
+
+    public EntityIndex(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    public int size() {
+        return this.entityCells.size();
+    }
+
+    public int getCellCount() {
+        return this.cells.size();
+    }
+
+    /**
+     * Adds an entity that was added to a loaded chunk.
+     *
+     * @param entity The entity
+     */
+    public void add(Entity entity) {
+        if (this.enabled && !this.entityCells.containsKey(entity)) {
+            final long cell = getCell(entity);
+            this.entityCells.put(entity, cell);
+            getEntities(cell, true).add(entity);
+        }
+    }
+
+    /**
+     * Removes an entity that was removed from its chunk.
+     *
+     * @param entity The entity
+     */
+    public void remove(Entity entity) {
+        if (this.enabled) {
+            final long cell = this.entityCells.remove(entity);
+            if (cell != NOT_INDEXED) {
+                removeFromCell(entity, cell);
+            }
+        }
+    }
+
+    /**
+     * Moves an entity to its new cell after its bounding box has changed.
+     *
+     * @param entity The entity
+     */
+    public void update(Entity entity) {
+        if (!this.enabled) {
+            return;
+        }
+
+        final long cell = this.entityCells.get(entity);
+        if (cell != NOT_INDEXED) {
+            final long newCell = getCell(entity);
+            if (newCell != cell) {
+                removeFromCell(entity, cell);
+                this.entityCells.put(entity, newCell);
+                getEntities(newCell, true).add(entity);
+            }
+        }
+    }
+
+    /**
+     * Returns the entities intersecting with a bounding box, like
+     * {@link net.minecraft.world.World#getEntitiesInAABBexcluding(Entity, AxisAlignedBB, Predicate)}.
+     * The parts of multi-part entities are included if the entity itself
+     * intersects with the bounding box.
+     *
+     * @param excluded The entity to exclude
+     * @param box The bounding box
+     * @param filter The filter for the entities
+     * @return The entities
+     */
+    public List<Entity> getEntities(@Nullable Entity excluded, AxisAlignedBB box, @Nullable Predicate<? super Entity> filter) {
+        final List<Entity> result = Lists.newArrayList();
+        forEachCandidate(box, entity -> addEntity(result, entity, excluded, box, filter));
+        return result;
+    }
+
+    private static void addEntity(List<Entity> result, Entity entity, @Nullable Entity excluded, AxisAlignedBB box,
+            @Nullable Predicate<? super Entity> filter) {
+        if (entity != excluded && entity.getEntityBoundingBox().intersectsWith(box)) {
+            if (filter == null || filter.apply(entity)) {
+                result.add(entity);
+            }
+
+            final Entity[] parts = entity.getParts();
+            if (parts != null) {
+                for (Entity part : parts) {
+                    if (part != excluded && part.getEntityBoundingBox().intersectsWith(box) && (filter == null || filter.apply(part))) {
+                        result.add(part);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the entities of a type intersecting with a bounding box, like
+     * {@link net.minecraft.world.World#getEntitiesWithinAABB(Class, AxisAlignedBB, Predicate)}.
+     *
+     * @param type The type of the entities
+     * @param box The bounding box
+     * @param filter The filter for the entities
+     * @param <T> The type of the entities
+     * @return The entities
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Entity> List<T> getEntities(Class<? extends T> type, AxisAlignedBB box, @Nullable Predicate<? super T> filter) {
+        final List<T> result = Lists.newArrayList();
+        forEachCandidate(box, entity -> {
+            if (type.isInstance(entity) && entity.getEntityBoundingBox().intersectsWith(box) && (filter == null || filter.apply((T) entity))) {
+                result.add((T) entity);
+            }
+        });
+        return result;
+    }
+
+    private void forEachCandidate(AxisAlignedBB box, Consumer<Entity> consumer) {
+        this.largeEntities.forEach(consumer);
+
+        final int minX = MathHelper.floor_double(box.minX - MAX_EXTENT) >> CELL_SHIFT;
+        final int minY = MathHelper.floor_double(box.minY - MAX_EXTENT) >> CELL_SHIFT;
+        final int minZ = MathHelper.floor_double(box.minZ - MAX_EXTENT) >> CELL_SHIFT;
+        final int maxX = MathHelper.floor_double(box.maxX) >> CELL_SHIFT;
+        final int maxY = MathHelper.floor_double(box.maxY) >> CELL_SHIFT;
+        final int maxZ = MathHelper.floor_double(box.maxZ) >> CELL_SHIFT;
+
+        // Huge boxes contain more cells than are occupied
+        if ((long) (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1) > this.cells.size()) {
+            for (Set<Entity> entities : this.cells.valueCollection()) {
+                entities.forEach(consumer);
+            }
+            return;
+        }
+
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int y = minY; y <= maxY; y++) {
+                    final Set<Entity> entities = this.cells.get(getKey(x, y, z));
+                    if (entities != null) {
+                        entities.forEach(consumer);
+                    }
+                }
+            }
+        }
+    }
+
+    private Set<Entity> getEntities(long cell, boolean create) {
+        if (cell == LARGE) {
+            return this.largeEntities;
+        }
+
+        Set<Entity> entities = this.cells.get(cell);
+        if (entities == null && create) {
+            entities = Sets.newLinkedHashSet();
+            this.cells.put(cell, entities);
+        }
+        return entities;
+    }
+
+    private void removeFromCell(Entity entity, long cell) {
+        final Set<Entity> entities = getEntities(cell, false);
+        if (entities != null) {
+            entities.remove(entity);
+            if (entities.isEmpty() && cell != LARGE) {
+                this.cells.remove(cell);
+            }
+        }
+    }
+
+    private static long getCell(Entity entity) {
+        final AxisAlignedBB box = entity.getEntityBoundingBox();
+        if (box.maxX - box.minX > MAX_EXTENT || box.maxY - box.minY > MAX_EXTENT || box.maxZ - box.minZ > MAX_EXTENT) {
+            return LARGE;
+        }
+        return getKey(MathHelper.floor_double(box.minX) >> CELL_SHIFT, MathHelper.floor_double(box.minY) >> CELL_SHIFT,
+                MathHelper.floor_double(box.minZ) >> CELL_SHIFT);
+    }
+
+    private static long getKey(int x, int y, int z) {
+        // 23 bits for X and Z are enough for the world border, 16 bits for Y
+        return ((long) (x & 0x7FFFFF) << 39) | ((long) (z & 0x7FFFFF) << 16) | (MathHelper.clamp_int(y, Short.MIN_VALUE, Short.MAX_VALUE) & 0xFFFF);
+    }
+
+}
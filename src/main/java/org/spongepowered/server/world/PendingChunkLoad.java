@@ -0,0 +1,132 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.world;
+
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.world.chunk.Chunk;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A chunk that is read asynchronously and will be added to the world on the
+ * main thread once its data is available.
+ */
+public final class PendingChunkLoad {
+
+    private final int x;
+    private final int z;
+    private final AtomicBoolean claimed = new AtomicBoolean();
+    private final CompletableFuture<NBTTagCompound> data = new CompletableFuture<>();
+    private final CompletableFuture<Chunk> chunk = new CompletableFuture<>();
+    private boolean playerDriven;
+    private boolean dropped;
+    private boolean completing;
+
+    public PendingChunkLoad(int x, int z, boolean playerDriven) {
+        this.x = x;
+        this.z = z;
+        this.playerDriven = playerDriven;
+    }
+
+    public int getX() {
+        return this.x;
+    }
+
+    public int getZ() {
+        return this.z;
+    }
+
+    /**
+     * Claims reading the chunk data, either by the I/O thread or by the main
+     * thread if it needs the chunk before the I/O thread got to it.
+     *
+     * @return True if the caller should read the chunk data
+     */
+    public boolean claim() {
+        return this.claimed.compareAndSet(false, true);
+    }
+
+    /**
+     * Returns the future that is completed with the NBT data of the chunk,
+     * or null if the chunk has not been generated yet.
+     *
+     * @return The chunk data future
+     */
+    public CompletableFuture<NBTTagCompound> getData() {
+        return this.data;
+    }
+
+    public CompletableFuture<Chunk> getChunk() {
+        return this.chunk;
+    }
+
+    /**
+     * Returns whether the chunk was only requested because a player came
+     * close to it. These loads are discarded if the player has left again
+     * before the chunk was added to the world.
+     *
+     * @return True if the load was only requested by a player
+     */
+    public boolean isPlayerDriven() {
+        return this.playerDriven;
+    }
+
+    public void setPlayerDriven(boolean playerDriven) {
+        this.playerDriven = playerDriven;
+    }
+
+    /**
+     * Returns whether the chunk was dropped while it was still being read,
+     * e.g. because the player has left again. The unload queue only holds
+     * loaded chunks, so the drop is remembered here until the load is
+     * completed.
+     *
+     * @return True if the chunk was dropped
+     */
+    public boolean isDropped() {
+        return this.dropped;
+    }
+
+    public void setDropped(boolean dropped) {
+        this.dropped = dropped;
+    }
+
+    /**
+     * Returns whether the chunk is added to the world once it was read.
+     * Otherwise it is only added when it is loaded with
+     * {@link net.minecraft.world.gen.ChunkProviderServer#loadChunk(int, int)}.
+     *
+     * @return True if the chunk is added once it was read
+     */
+    public boolean isCompleting() {
+        return this.completing;
+    }
+
+    public void setCompleting(boolean completing) {
+        this.completing = completing;
+    }
+
+}
@@ -0,0 +1,203 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.world;
+
+import net.minecraft.world.ChunkCoordIntPair;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.gen.ChunkProviderServer;
+import ninja.leaping.configurate.ConfigurationNode;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates all chunks in a square around a center chunk, row by row.
+ *
+ * <p>Each chunk is kept loaded until all of its neighbours were generated,
+ * so it gets populated like it would while exploring the world. The chunks
+ * are saved by the Vanilla file I/O thread once they are unloaded.</p>
+ */
+public final class PregenTask {
+
+    private final WorldServer world;
+    private final int centerX;
+    private final int centerZ;
+    private final int radius;
+    private final int diameter;
+    private final long total;
+
+    private long index;
+    private final Set<Long> loadedChunks = new HashSet<>();
+
+    private final long sessionStart = System.nanoTime();
+    private final long sessionStartIndex;
+    private boolean throttled;
+
+    PregenTask(WorldServer world, int centerX, int centerZ, int radius, long index) {
+        this.world = world;
+        this.centerX = centerX;
+        this.centerZ = centerZ;
+        this.radius = radius;
+        this.diameter = radius * 2 + 1;
+        this.total = (long) this.diameter * this.diameter;
+        this.index = Math.min(Math.max(index, 0), this.total);
+        this.sessionStartIndex = this.index;
+    }
+
+    static PregenTask load(WorldServer world, ConfigurationNode node) {
+        final int radius = node.getNode("radius").getInt();
+        final long index = node.getNode("index").getLong();
+        // Restart at the previous row to populate it together with the next row
+        final long diameter = radius * 2 + 1;
+        return new PregenTask(world, node.getNode("center-x").getInt(), node.getNode("center-z").getInt(), radius,
+                Math.max(index / diameter - 1, 0) * diameter);
+    }
+
+    void save(ConfigurationNode node) {
+        node.getNode("center-x").setValue(this.centerX);
+        node.getNode("center-z").setValue(this.centerZ);
+        node.getNode("radius").setValue(this.radius);
+        node.getNode("index").setValue(this.index);
+    }
+
+    /**
+     * Generates chunks until the deadline has passed.
+     *
+     * @param deadline The deadline as {@link System#nanoTime()}
+     * @return True if all chunks were generated
+     */
+    boolean generate(long deadline) {
+        final ChunkProviderServer provider = this.world.theChunkProviderServer;
+        while (this.index < this.total && System.nanoTime() < deadline) {
+            final int dx = (int) (this.index % this.diameter);
+            final int dz = (int) (this.index / this.diameter);
+            final int x = this.centerX - this.radius + dx;
+            final int z = this.centerZ - this.radius + dz;
+
+            if (!provider.chunkExists(x, z)) {
+                provider.loadChunk(x, z);
+                this.loadedChunks.add(ChunkCoordIntPair.chunkXZ2Int(x, z));
+            }
+
+            // All neighbours of the chunk diagonally behind are generated now
+            if (dx > 0 && dz > 0) {
+                release(x - 1, z - 1);
+                if (dx == this.diameter - 1) {
+                    release(x, z - 1);
+                }
+            }
+
+            this.index++;
+        }
+
+        if (this.index >= this.total) {
+            releaseAll();
+            return true;
+        }
+        return false;
+    }
+
+    private void release(int x, int z) {
+        if (this.loadedChunks.remove(ChunkCoordIntPair.chunkXZ2Int(x, z)) && !this.world.getPlayerManager().hasPlayerInstance(x, z)) {
+            this.world.theChunkProviderServer.dropChunk(x, z);
+        }
+    }
+
+    /**
+     * Queues all chunks that were loaded by this task for unloading.
+     */
+    void releaseAll() {
+        for (long key : this.loadedChunks) {
+            final int x = (int) key;
+            final int z = (int) (key >> 32);
+            if (!this.world.getPlayerManager().hasPlayerInstance(x, z)) {
+                this.world.theChunkProviderServer.dropChunk(x, z);
+            }
+        }
+        this.loadedChunks.clear();
+    }
+
+    public WorldServer getWorld() {
+        return this.world;
+    }
+
+    public int getCenterX() {
+        return this.centerX;
+    }
+
+    public int getCenterZ() {
+        return this.centerZ;
+    }
+
+    public int getRadius() {
+        return this.radius;
+    }
+
+    public long getGenerated() {
+        return this.index;
+    }
+
+    public long getTotal() {
+        return this.total;
+    }
+
+    /**
+     * Returns whether the task was paused in the last tick because the
+     * server was too busy.
+     *
+     * @return True if the task is currently throttled
+     */
+    public boolean isThrottled() {
+        return this.throttled;
+    }
+
+    void setThrottled(boolean throttled) {
+        this.throttled = throttled;
+    }
+
+    /**
+     * Returns the number of chunks processed per second since the task was
+     * started or resumed.
+     *
+     * @return The generation rate in chunks per second
+     */
+    public double getChunksPerSecond() {
+        final long elapsed = System.nanoTime() - this.sessionStart;
+        return elapsed > 0 ? (this.index - this.sessionStartIndex) * (double) TimeUnit.SECONDS.toNanos(1) / elapsed : 0;
+    }
+
+    /**
+     * Returns the estimated time until all chunks are generated, based on
+     * the current generation rate.
+     *
+     * @return The estimated remaining time in seconds, or -1 if unknown
+     */
+    public long getEstimatedSecondsLeft() {
+        final double rate = getChunksPerSecond();
+        return rate > 0 ? (long) ((this.total - this.index) / rate) : -1;
+    }
+
+}
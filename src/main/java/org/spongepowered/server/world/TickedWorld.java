@@ -0,0 +1,100 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.world;
+
+import net.minecraft.world.WorldServer;
+import org.spongepowered.server.tick.PhaseTimings;
+import org.spongepowered.server.tick.TickPolicy;
+import org.spongepowered.server.tick.TickTimeBuffer;
+
+/**
+ * A loaded world together with everything the tick loop needs to tick it,
+ * so it doesn't need to look up anything by the dimension ID.
+ */
+public final class TickedWorld {
+
+    private final int dimensionId;
+    private final WorldServer world;
+    private final TickTimeBuffer tickTimes;
+    private final PhaseTimings timings = new PhaseTimings(true);
+
+    private volatile TickPolicy policy;
+    private volatile int tickDivisor = 1;
+    private volatile long skippedTicks;
+
+    TickedWorld(int dimensionId, WorldServer world, TickTimeBuffer tickTimes, TickPolicy policy) {
+        this.dimensionId = dimensionId;
+        this.world = world;
+        this.tickTimes = tickTimes;
+        this.policy = policy;
+    }
+
+    public int getDimensionId() {
+        return this.dimensionId;
+    }
+
+    public WorldServer getWorld() {
+        return this.world;
+    }
+
+    public TickTimeBuffer getTickTimes() {
+        return this.tickTimes;
+    }
+
+    public PhaseTimings getTimings() {
+        return this.timings;
+    }
+
+    public TickPolicy getPolicy() {
+        return this.policy;
+    }
+
+    public void setPolicy(TickPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Returns the interval in which the world was last ticked by the tick
+     * governor, 1 means the world was ticked at full rate.
+     *
+     * @return The current tick divisor
+     */
+    public int getTickDivisor() {
+        return this.tickDivisor;
+    }
+
+    public void setTickDivisor(int tickDivisor) {
+        this.tickDivisor = tickDivisor;
+    }
+
+    public long getSkippedTicks() {
+        return this.skippedTicks;
+    }
+
+    public void addSkippedTick() {
+        this.skippedTicks++; // Only written by the main thread
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.world;
+
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.network.play.server.S03PacketTimeUpdate;
+import net.minecraft.world.WorldServer;
+
+import java.util.List;
+
+/**
+ * Sends the periodic time updates to the players in a single pass over the
+ * player list.
+ *
+ * <p>Vanilla sends the time of all worlds every 20 ticks, walking the player
+ * list once for each world. Instead, each player is assigned to one of the
+ * 20 ticks based on its entity ID, so the updates are spread over all ticks.
+ * The packets are shared by all players in the same world that are due in the
+ * same tick. Worlds without daylight cycle reuse their packet for the whole
+ * interval because their time does not change.</p>
+ */
+public final class TimeSynchronizer {
+
+    public static final int INTERVAL = 20;
+
+    private final TIntObjectMap<S03PacketTimeUpdate> packets = new TIntObjectHashMap<>();
+    private final TIntObjectMap<FrozenTime> frozen = new TIntObjectHashMap<>();
+
+    public void tick(int tickCounter, List<EntityPlayerMP> players) {
+        final int slot = tickCounter % INTERVAL;
+        if (slot == 0) {
+            this.frozen.clear();
+        }
+
+        for (int i = 0; i < players.size(); i++) {
+            final EntityPlayerMP player = players.get(i);
+            if (Math.floorMod(player.getEntityId(), INTERVAL) != slot) {
+                continue;
+            }
+
+            S03PacketTimeUpdate packet = this.packets.get(player.dimension);
+            if (packet == null) {
+                packet = createPacket(player.getServerForPlayer());
+                this.packets.put(player.dimension, packet);
+            }
+
+            player.playerNetServerHandler.sendPacket(packet);
+        }
+
+        this.packets.clear();
+    }
+
+    private S03PacketTimeUpdate createPacket(WorldServer world) {
+        final boolean daylightCycle = world.getGameRules().getBoolean("doDaylightCycle");
+        if (daylightCycle) {
+            return new S03PacketTimeUpdate(world.getTotalWorldTime(), world.getWorldTime(), true);
+        }
+
+        final int dimensionId = world.provider.getDimensionId();
+        FrozenTime cached = this.frozen.get(dimensionId);
+        if (cached == null || cached.worldTime != world.getWorldTime()) {
+            cached = new FrozenTime(world.getWorldTime(), new S03PacketTimeUpdate(world.getTotalWorldTime(), world.getWorldTime(), false));
+            this.frozen.put(dimensionId, cached);
+        }
+        return cached.packet;
+    }
+
+    private static final class FrozenTime {
+
+        final long worldTime;
+        final S03PacketTimeUpdate packet;
+
+        FrozenTime(long worldTime, S03PacketTimeUpdate packet) {
+            this.worldTime = worldTime;
+            this.packet = packet;
+        }
+
+    }
+
+}
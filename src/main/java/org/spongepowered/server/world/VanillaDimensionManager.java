@@ -24,66 +24,196 @@
  */
 package org.spongepowered.server.world;
 
-import com.google.common.collect.Lists;
 import net.minecraft.server.MinecraftServer;
-import net.minecraft.world.MinecraftException;
-import net.minecraft.world.World;
 import net.minecraft.world.WorldServer;
 import org.apache.logging.log4j.Level;
-import org.spongepowered.api.event.SpongeEventFactory;
-import org.spongepowered.api.event.cause.Cause;
-import org.spongepowered.api.event.cause.NamedCause;
+import org.spongepowered.api.world.World;
 import org.spongepowered.api.world.storage.WorldProperties;
 import org.spongepowered.common.SpongeImpl;
+import org.spongepowered.common.interfaces.IMixinMinecraftServer;
 import org.spongepowered.common.world.DimensionManager;
+import org.spongepowered.server.SpongeVanilla;
+import org.spongepowered.server.interfaces.IMixinWorldServer;
+import org.spongepowered.server.tick.TickPolicy;
+import org.spongepowered.server.tick.WorldTickTimes;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
 
 public class VanillaDimensionManager extends DimensionManager {
 
+    private static final Comparator<TickedWorld> TICK_ORDER = Comparator.<TickedWorld>comparingInt(world -> getTickPriority(world.getDimensionId()))
+            .thenComparingInt(TickedWorld::getDimensionId);
+
+    private static final WorldUnloader unloader = new WorldUnloader();
+
+    // Copy-on-write, only replaced when a world is loaded or unloaded
+    private static volatile TickedWorld[] tickedWorlds = new TickedWorld[0];
+
+    // Worlds that are created, but neither registered nor ticked until they are activated
+    private static final Map<Integer, WorldServer> stagedWorlds = new HashMap<>();
+    private static boolean staging;
+
+    public static void setWorld(int id, @Nullable WorldServer world) {
+        if (world != null) {
+            unloader.await(id, world.getSaveHandler().getWorldDirectory());
+
+            if (staging) {
+                // Hidden from lookups, so players can't enter the world before it is ticked
+                stagedWorlds.put(id, world);
+                return;
+            }
+        }
+
+        stagedWorlds.remove(id);
+        DimensionManager.setWorld(id, world);
+        updateTickedWorlds(id, world);
+    }
+
+    /**
+     * Sets whether worlds that are loaded are staged instead of being ticked
+     * immediately. Staged worlds are not registered, so they can't be looked
+     * up or entered until they are activated with {@link #activateWorld(int)}.
+     *
+     * @param staging Whether to stage loaded worlds
+     */
+    public static void setStaging(boolean staging) {
+        VanillaDimensionManager.staging = staging;
+    }
+
+    /**
+     * Returns the staged world with the specified dimension ID.
+     *
+     * @param id The dimension ID
+     * @return The staged world, or null if the world is not staged
+     */
+    @Nullable
+    public static WorldServer getStagedWorld(int id) {
+        return stagedWorlds.get(id);
+    }
+
+    /**
+     * Registers a staged world and adds it to the tick loop.
+     *
+     * @param id The dimension ID
+     */
+    public static void activateWorld(int id) {
+        final WorldServer world = stagedWorlds.remove(id);
+        if (world != null) {
+            DimensionManager.setWorld(id, world);
+            updateTickedWorlds(id, world);
+        }
+    }
+
+    private static void updateTickedWorlds(int id, @Nullable WorldServer world) {
+        final TickedWorld[] current = tickedWorlds;
+        final List<TickedWorld> updated = new ArrayList<>(current.length + 1);
+        for (TickedWorld ticked : current) {
+            if (ticked.getDimensionId() != id) {
+                updated.add(ticked);
+            }
+        }
+
+        if (world != null) {
+            // Keep the legacy tick time map (used by SpongeCommon) up-to-date without looking it up on every tick
+            final Hashtable<Integer, long[]> worldTickTimes = ((IMixinMinecraftServer) MinecraftServer.getServer()).getWorldTickTimes();
+            long[] legacySamples = worldTickTimes.get(id);
+            if (legacySamples == null) {
+                legacySamples = new long[100];
+                worldTickTimes.put(id, legacySamples);
+            }
+            final TickPolicy policy = SpongeVanilla.INSTANCE.getConfig().getGovernor().getPolicy(world.getWorldInfo().getWorldName());
+            updated.add(new TickedWorld(id, world, WorldTickTimes.register(id, legacySamples), policy));
+            ChunkPregenerator.onWorldLoad(id, world);
+        } else {
+            WorldTickTimes.unregister(id);
+            ChunkPregenerator.onWorldUnload(id);
+        }
+
+        updated.sort(TICK_ORDER);
+        tickedWorlds = updated.toArray(new TickedWorld[updated.size()]);
+    }
+
+    /**
+     * Returns the loaded worlds in the order they are ticked: The overworld,
+     * the nether and the end first, followed by all other worlds sorted by
+     * their dimension ID.
+     *
+     * <p>The returned array is replaced when a world is loaded or unloaded
+     * and must not be modified.</p>
+     *
+     * @return The worlds to tick
+     */
+    public static TickedWorld[] getTickedWorlds() {
+        return tickedWorlds;
+    }
+
+    private static int getTickPriority(int dimensionId) {
+        switch (dimensionId) {
+            case 0:
+                return 0;
+            case -1:
+                return 1;
+            case 1:
+                return 2;
+            default:
+                return 3;
+        }
+    }
+
     public static void unloadWorlds(Hashtable<Integer, long[]> worldTickTimes) {
         for (int id : unloadQueue) {
             WorldServer w = worlds.get(id);
-            try {
-                if (w != null) {
-                    w.saveAllChunks(true, null);
-                } else {
-                    SpongeImpl.getLogger().log(Level.ERROR, "Unexpected world unload - world {} is already unloaded", id);
-                }
-            } catch (MinecraftException e) {
-                e.printStackTrace();
-            } finally {
-                if (w != null) {
-                    SpongeImpl.postEvent(SpongeEventFactory.createUnloadWorldEvent(Cause.of(NamedCause.source(MinecraftServer.getServer())),
-                            (org.spongepowered.api.world.World) w));
-                    w.flush();
-                    setWorld(id, null);
-                }
+            if (w != null) {
+                // Stop ticking the world before it is saved over the next ticks
+                ((IMixinWorldServer) w).getChunkEventBatch().post((World) w);
+                setWorld(id, null);
+                unloader.unload(id, w);
+            } else {
+                SpongeImpl.getLogger().log(Level.ERROR, "Unexpected world unload - world {} is already unloaded", id);
             }
         }
         unloadQueue.clear();
+
+        unloader.tick(TimeUnit.MILLISECONDS.toNanos(SpongeVanilla.INSTANCE.getConfig().getWorld().getUnloadSaveBudget()));
     }
 
-    public static Integer[] getIDs(boolean check) {
-        if (check) {
-            List<World> allWorlds = Lists.newArrayList(weakWorldMap.keySet());
-            allWorlds.removeAll(worlds.values());
-            for (World w : allWorlds) {
-                leakedWorlds.add(System.identityHashCode(w));
-            }
-            for (World w : allWorlds) {
-                int leakCount = leakedWorlds.count(System.identityHashCode(w));
-                if (leakCount == 5) {
-                    SpongeImpl.getLogger().log(Level.WARN, "The world {} ({}) may have leaked: first encounter (5 occurences).\n", System
-                            .identityHashCode(w), w.getWorldInfo().getWorldName());
-                } else if (leakCount % 5 == 0) {
-                    SpongeImpl.getLogger().log(Level.WARN, "The world {} ({}) may have leaked: seen {} times.\n", System.identityHashCode(w),
-                            w.getWorldInfo().getWorldName(), leakCount);
-                }
-            }
-        }
-        return getIDs();
+    /**
+     * Returns whether the specified dimension was unloaded, but is still
+     * being saved.
+     *
+     * @param id The dimension ID
+     * @return True if the world is still being unloaded
+     */
+    public static boolean isUnloading(int id) {
+        return unloader.isUnloading(id);
+    }
+
+    /**
+     * Waits until a world that is still being unloaded from the specified
+     * directory has been written to disk. Called before the directory is
+     * used by a new world.
+     *
+     * @param worldDirectory The world directory
+     */
+    public static void awaitUnload(File worldDirectory) {
+        unloader.await(Integer.MIN_VALUE, worldDirectory);
+    }
+
+    /**
+     * Saves all worlds that are still being unloaded. Called when the
+     * server is stopping.
+     */
+    public static void finishUnloading() {
+        unloader.finish();
     }
 
     public static void unloadWorld(int id) {
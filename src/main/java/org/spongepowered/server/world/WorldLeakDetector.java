@@ -0,0 +1,348 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.world;
+
+import com.google.common.collect.ImmutableList;
+import net.minecraft.entity.Entity;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.Chunk;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.plugin.PluginContainer;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.common.SpongeImpl;
+import org.spongepowered.server.SpongeVanilla;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+/**
+ * Detects worlds that are not garbage collected after they were unloaded.
+ *
+ * <p>Unloaded worlds are tracked with phantom references on a separate
+ * thread, so there is no cost for the main thread unless a world was not
+ * collected after the configured delay. In that case, the entities of the
+ * loaded worlds are searched for references to the leaked world on the
+ * main thread. The fields of the plugin instances are searched for
+ * references to the world, its entities and its chunks on the leak detector
+ * thread.</p>
+ */
+public final class WorldLeakDetector {
+
+    private static final long CHECK_INTERVAL = TimeUnit.SECONDS.toMillis(5);
+    private static final int MAX_SCANNED_ELEMENTS = 1000;
+
+    private static final ReferenceQueue<WorldServer> queue = new ReferenceQueue<>();
+    private static final Set<TrackedWorld> trackedWorlds = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    @Nullable private static Thread thread;
+
+    private WorldLeakDetector() {
+    }
+
+    /**
+     * Starts tracking a world that was unloaded.
+     *
+     * @param dimensionId The dimension ID of the world
+     * @param world The unloaded world
+     */
+    static void track(int dimensionId, WorldServer world) {
+        final long delay = SpongeVanilla.INSTANCE.getConfig().getWorld().getLeakDetectionDelay();
+        if (delay <= 0) {
+            return;
+        }
+
+        trackedWorlds.add(new TrackedWorld(world, dimensionId, TimeUnit.SECONDS.toMillis(delay)));
+
+        synchronized (WorldLeakDetector.class) {
+            if (thread == null) {
+                thread = new Thread(WorldLeakDetector::run, "Server World Leak Detector");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+    }
+
+    /**
+     * Returns the unloaded worlds that were not garbage collected after the
+     * configured delay.
+     *
+     * @return The suspected world leaks
+     */
+    public static List<Report> getSuspectedLeaks() {
+        final ImmutableList.Builder<Report> builder = ImmutableList.builder();
+        for (TrackedWorld world : trackedWorlds) {
+            if (world.report != null) {
+                builder.add(world.report);
+            }
+        }
+        return builder.build();
+    }
+
+    private static void run() {
+        while (true) {
+            try {
+                Reference<? extends WorldServer> ref = queue.remove(CHECK_INTERVAL);
+                while (ref != null) {
+                    final TrackedWorld world = (TrackedWorld) ref;
+                    trackedWorlds.remove(world);
+                    if (world.report != null) {
+                        SpongeImpl.getLogger().info("The world {} ({}) was garbage collected after all", world.dimensionId, world.name);
+                    }
+                    ref = queue.poll();
+                }
+
+                final long now = System.currentTimeMillis();
+                for (TrackedWorld world : trackedWorlds) {
+                    if (now >= world.nextCheck) {
+                        world.nextCheck = now + world.delay;
+                        world.check();
+                    }
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // Called on the main thread
+    private static List<String> findEntityRetainers(WorldServer world) {
+        final List<String> retainers = new ArrayList<>();
+        for (WorldServer other : MinecraftServer.getServer().worldServers) {
+            for (Entity entity : other.loadedEntityList) {
+                if (entity.worldObj == world) {
+                    retainers.add("Entity " + entity + " in world " + other.getWorldInfo().getWorldName());
+                }
+            }
+        }
+        return retainers;
+    }
+
+    private static void findPluginRetainers(WorldServer world, List<String> retainers) {
+        for (PluginContainer plugin : Sponge.getPluginManager().getPlugins()) {
+            final Object instance = plugin.getInstance().orElse(null);
+            if (instance == null) {
+                continue;
+            }
+
+            for (Class<?> type = instance.getClass(); type != null && type != Object.class; type = type.getSuperclass()) {
+                for (Field field : type.getDeclaredFields()) {
+                    final Object value;
+                    try {
+                        field.setAccessible(true);
+                        value = field.get(Modifier.isStatic(field.getModifiers()) ? null : instance);
+                    } catch (ReflectiveOperationException | RuntimeException e) {
+                        continue;
+                    }
+
+                    final String retained = describeReference(value, world);
+                    if (retained != null) {
+                        retainers.add("Plugin " + plugin.getId() + " (field " + type.getName() + '#' + field.getName() + " holds " + retained + ')');
+                    }
+                }
+            }
+        }
+    }
+
+    @Nullable
+    private static String describeReference(@Nullable Object value, WorldServer world) {
+        if (value == null) {
+            return null;
+        }
+        if (value == world) {
+            return "the world";
+        }
+        if (value instanceof Entity) {
+            return ((Entity) value).worldObj == world ? "entity " + value : null;
+        }
+        if (value instanceof Chunk) {
+            final Chunk chunk = (Chunk) value;
+            return chunk.getWorld() == world ? "chunk " + chunk.xPosition + ", " + chunk.zPosition : null;
+        }
+        if (value instanceof Location) {
+            return ((Location<?>) value).getExtent() == world ? "location " + value : null;
+        }
+        if (value instanceof Map) {
+            final Map<?, ?> map = (Map<?, ?>) value;
+            final String retained = describeElements(map.keySet(), world);
+            return retained != null ? retained : describeElements(map.values(), world);
+        }
+        if (value instanceof Collection) {
+            return describeElements((Collection<?>) value, world);
+        }
+        return null;
+    }
+
+    @Nullable
+    private static String describeElements(Collection<?> collection, WorldServer world) {
+        int count = 0;
+        try {
+            for (Object element : collection) {
+                if (count++ >= MAX_SCANNED_ELEMENTS) {
+                    break;
+                }
+
+                // Don't descend into nested collections
+                if (!(element instanceof Collection) && !(element instanceof Map)) {
+                    final String retained = describeReference(element, world);
+                    if (retained != null) {
+                        return retained + " in a " + collection.getClass().getSimpleName();
+                    }
+                }
+            }
+        } catch (RuntimeException ignored) {
+            // The collection was modified or does not support iteration
+        }
+        return null;
+    }
+
+    /**
+     * A report about an unloaded world that was not garbage collected.
+     */
+    public static final class Report {
+
+        private final int dimensionId;
+        private final String worldName;
+        private final long unloadTime;
+        private final int occurrences;
+        private final List<String> retainers;
+
+        Report(int dimensionId, String worldName, long unloadTime, int occurrences, List<String> retainers) {
+            this.dimensionId = dimensionId;
+            this.worldName = worldName;
+            this.unloadTime = unloadTime;
+            this.occurrences = occurrences;
+            this.retainers = ImmutableList.copyOf(retainers);
+        }
+
+        public int getDimensionId() {
+            return this.dimensionId;
+        }
+
+        public String getWorldName() {
+            return this.worldName;
+        }
+
+        /**
+         * Returns the time the world was unloaded at.
+         *
+         * @return The unload time in milliseconds since the epoch
+         */
+        public long getUnloadTime() {
+            return this.unloadTime;
+        }
+
+        /**
+         * Returns how often the world was found to be still in memory.
+         *
+         * @return The number of occurrences
+         */
+        public int getOccurrences() {
+            return this.occurrences;
+        }
+
+        /**
+         * Returns descriptions of the objects that were found to reference
+         * the world. This is not necessarily complete.
+         *
+         * @return The found references to the world
+         */
+        public List<String> getRetainers() {
+            return this.retainers;
+        }
+
+    }
+
+    private static final class TrackedWorld extends PhantomReference<WorldServer> {
+
+        // Only used to find references to the world if it has leaked
+        private final WeakReference<WorldServer> world;
+        private final int dimensionId;
+        private final String name;
+        private final long unloadTime;
+        private final long delay;
+
+        private volatile long nextCheck;
+        private int occurrences;
+        @Nullable private volatile Report report;
+
+        TrackedWorld(WorldServer world, int dimensionId, long delay) {
+            super(world, queue);
+            this.world = new WeakReference<>(world);
+            this.dimensionId = dimensionId;
+            this.name = world.getWorldInfo().getWorldName();
+            this.unloadTime = System.currentTimeMillis();
+            this.delay = delay;
+            this.nextCheck = this.unloadTime + delay;
+        }
+
+        // Called on the leak detector thread
+        void check() throws InterruptedException {
+            final WorldServer world = this.world.get();
+            if (world == null) {
+                return; // Only reachable through the phantom reference now
+            }
+
+            final List<String> retainers;
+            try {
+                // The entities of the loaded worlds can only be accessed on the main thread
+                retainers = MinecraftServer.getServer().callFromMainThread(() -> findEntityRetainers(world)).get();
+            } catch (ExecutionException e) {
+                SpongeImpl.getLogger().error("Failed to search the loaded worlds for references to world {} ({})", this.dimensionId, this.name,
+                        e.getCause());
+                return;
+            }
+            // Plugin fields are only read, collections modified in the meantime are skipped
+            findPluginRetainers(world, retainers);
+            this.report = new Report(this.dimensionId, this.name, this.unloadTime, ++this.occurrences, retainers);
+
+            if (retainers.isEmpty()) {
+                SpongeImpl.getLogger().warn("The world {} ({}) may have leaked: still in memory {} seconds after it was unloaded",
+                        this.dimensionId, this.name, TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - this.unloadTime));
+            } else {
+                SpongeImpl.getLogger().warn("The world {} ({}) may have leaked: still in memory {} seconds after it was unloaded. "
+                                + "It is referenced by:\n  {}", this.dimensionId, this.name,
+                        TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - this.unloadTime), String.join("\n  ", retainers));
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,275 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.world;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.MinecraftException;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.IChunkLoader;
+import net.minecraft.world.chunk.storage.RegionFile;
+import net.minecraft.world.chunk.storage.RegionFileCache;
+import org.spongepowered.api.event.SpongeEventFactory;
+import org.spongepowered.api.event.cause.Cause;
+import org.spongepowered.api.event.cause.NamedCause;
+import org.spongepowered.common.SpongeImpl;
+import org.spongepowered.server.interfaces.IMixinAnvilChunkLoader;
+import org.spongepowered.server.interfaces.IMixinChunkProviderServer;
+import org.spongepowered.server.interfaces.IMixinWorldServer;
+import org.spongepowered.server.world.storage.MappedRegionFileCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.Nullable;
+
+/**
+ * Saves and closes worlds after they have been removed from the tick loop.
+ *
+ * <p>The chunks of the world are serialized on the main thread, but only as
+ * many as fit into the configured time budget per tick. Vanilla already
+ * writes the serialized chunks on its file I/O thread, so the unloader only
+ * waits for the writes of the world and releases its region files on a
+ * separate thread. Loading the same world again first finishes its pending
+ * unload (see {@link #await(int, File)}). The {@link org.spongepowered.api.event.world.UnloadWorldEvent}
+ * is posted on the main thread once everything has been written.</p>
+ */
+final class WorldUnloader {
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("Server World Unloader").setDaemon(true).build());
+
+    // Only accessed from the main thread
+    private final Queue<PendingUnload> saving = new ArrayDeque<>();
+    private final TIntObjectMap<PendingUnload> pending = new TIntObjectHashMap<>();
+
+    boolean isUnloading(int dimensionId) {
+        return this.pending.containsKey(dimensionId);
+    }
+
+    /**
+     * Queues a world that was removed from the tick loop for saving.
+     *
+     * @param dimensionId The dimension ID of the world
+     * @param world The world to unload
+     */
+    void unload(int dimensionId, WorldServer world) {
+        final PendingUnload unload = new PendingUnload(dimensionId, world);
+        this.pending.put(dimensionId, unload);
+        this.saving.add(unload);
+    }
+
+    /**
+     * Continues saving the queued worlds.
+     *
+     * @param budget The maximum time in nanoseconds to spend saving chunks,
+     *     or zero to save everything at once
+     */
+    void tick(long budget) {
+        final long start = System.nanoTime();
+
+        PendingUnload unload;
+        while ((unload = this.saving.peek()) != null) {
+            if (!unload.save(start, budget)) {
+                return; // Continue in the next tick
+            }
+
+            this.saving.remove();
+            unload.flush();
+        }
+    }
+
+    /**
+     * Saves all queued worlds and waits until they have been written to
+     * disk. Used when the server is stopping.
+     */
+    void finish() {
+        tick(0);
+
+        for (PendingUnload unload : new ArrayList<>(this.pending.valueCollection())) {
+            unload.finish();
+        }
+    }
+
+    /**
+     * Finishes the pending unload of a world with the specified dimension
+     * ID or world directory, so that the world can be loaded again without
+     * reading stale data or losing its region files to the unloader.
+     *
+     * @param dimensionId The dimension ID of the world that is loaded, or
+     *     {@link Integer#MIN_VALUE} if not known yet
+     * @param worldDirectory The directory of the world that is loaded, or
+     *     null if not known
+     */
+    void await(int dimensionId, @Nullable File worldDirectory) {
+        for (PendingUnload unload : new ArrayList<>(this.pending.valueCollection())) {
+            if (unload.dimensionId == dimensionId || (worldDirectory != null && isSameDirectory(unload.getWorldDirectory(), worldDirectory))) {
+                SpongeImpl.getLogger().info("Waiting for world {} ({}) to finish unloading before it is loaded again", unload.dimensionId,
+                        unload.world.getWorldInfo().getWorldName());
+                if (this.saving.remove(unload)) {
+                    unload.save(System.nanoTime(), 0);
+                    unload.flush();
+                }
+                unload.finish();
+            }
+        }
+    }
+
+    private static boolean isSameDirectory(File a, File b) {
+        return a.toPath().toAbsolutePath().normalize().equals(b.toPath().toAbsolutePath().normalize());
+    }
+
+    private static void releaseRegionFiles(File regionDir) {
+        if (MappedRegionFileCache.isEnabled()) {
+            MappedRegionFileCache.release(regionDir);
+            return;
+        }
+
+        synchronized (RegionFileCache.class) {
+            final Iterator<Map.Entry<File, RegionFile>> itr = RegionFileCache.regionsByFilename.entrySet().iterator();
+            while (itr.hasNext()) {
+                final Map.Entry<File, RegionFile> entry = itr.next();
+                if (regionDir.equals(entry.getKey().getParentFile())) {
+                    try {
+                        entry.getValue().close();
+                    } catch (IOException e) {
+                        SpongeImpl.getLogger().error("Failed to close region file {}", entry.getKey(), e);
+                    }
+                    itr.remove();
+                }
+            }
+        }
+    }
+
+    private final class PendingUnload {
+
+        private final int dimensionId;
+        private final WorldServer world;
+
+        @Nullable private Iterator<Chunk> chunks;
+        private int savedChunks;
+
+        @Nullable private CompletableFuture<Void> flush;
+        private boolean completed;
+
+        PendingUnload(int dimensionId, WorldServer world) {
+            this.dimensionId = dimensionId;
+            this.world = world;
+        }
+
+        boolean save(long start, long budget) {
+            final IMixinChunkProviderServer chunkProvider = (IMixinChunkProviderServer) this.world.theChunkProviderServer;
+
+            if (this.chunks == null) {
+                if (this.world.theChunkProviderServer.canSave()) {
+                    try {
+                        ((IMixinWorldServer) this.world).saveLevelData();
+                    } catch (MinecraftException e) {
+                        SpongeImpl.getLogger().error("Failed to save level data of world {} ({})", this.dimensionId,
+                                this.world.getWorldInfo().getWorldName(), e);
+                    }
+
+                    this.chunks = new ArrayList<>(chunkProvider.getLoadedChunks()).iterator();
+                } else {
+                    this.chunks = Collections.emptyIterator();
+                }
+            }
+
+            while (this.chunks.hasNext()) {
+                if (budget > 0 && System.nanoTime() - start >= budget) {
+                    return false;
+                }
+
+                if (chunkProvider.saveChunk(this.chunks.next())) {
+                    this.savedChunks++;
+                }
+            }
+
+            return true;
+        }
+
+        void flush() {
+            final IChunkLoader chunkLoader = ((IMixinChunkProviderServer) this.world.theChunkProviderServer).getChunkLoader();
+            final File regionDir = chunkLoader instanceof IMixinAnvilChunkLoader
+                    ? new File(((IMixinAnvilChunkLoader) chunkLoader).getChunkSaveLocation(), "region") : null;
+
+            if (regionDir == null) {
+                this.flush = CompletableFuture.completedFuture(null);
+            } else {
+                // Only wait for the chunks of this world, other worlds may keep the I/O thread busy
+                this.flush = ((IMixinAnvilChunkLoader) chunkLoader).getPendingWrites().thenRunAsync(() -> releaseRegionFiles(regionDir), executor);
+            }
+
+            this.flush.whenComplete((result, e) -> {
+                if (e != null) {
+                    SpongeImpl.getLogger().error("Failed to flush world {} ({})", this.dimensionId, this.world.getWorldInfo().getWorldName(), e);
+                }
+
+                MinecraftServer.getServer().addScheduledTask(this::complete);
+            });
+        }
+
+        File getWorldDirectory() {
+            return this.world.getSaveHandler().getWorldDirectory();
+        }
+
+        void finish() {
+            if (this.flush != null) {
+                this.flush.join();
+            }
+            complete();
+        }
+
+        void complete() {
+            if (this.completed) {
+                return;
+            }
+
+            this.completed = true;
+            WorldUnloader.this.pending.remove(this.dimensionId);
+
+            SpongeImpl.getLogger().debug("Finished unloading world {} ({}), saved {} chunks", this.dimensionId,
+                    this.world.getWorldInfo().getWorldName(), this.savedChunks);
+            SpongeImpl.postEvent(SpongeEventFactory.createUnloadWorldEvent(Cause.of(NamedCause.source(MinecraftServer.getServer())),
+                    (org.spongepowered.api.world.World) this.world));
+
+            WorldLeakDetector.track(this.dimensionId, this.world);
+        }
+
+    }
+
+}
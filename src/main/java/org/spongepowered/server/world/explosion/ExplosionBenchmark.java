@@ -0,0 +1,116 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.world.explosion;
+
+import net.minecraft.util.BlockPos;
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * Compares the time needed to collect the blocks affected by an explosion
+ * with each {@link ExplosionEngine}, and verifies that all of them collect
+ * the same blocks as Vanilla.
+ */
+public final class ExplosionBenchmark {
+
+    private final Map<ExplosionEngine, Long> times = new EnumMap<>(ExplosionEngine.class);
+    private final int blocks;
+    private final boolean identical;
+
+    private ExplosionBenchmark(int blocks, boolean identical) {
+        this.blocks = blocks;
+        this.identical = identical;
+    }
+
+    /**
+     * Runs the benchmark without modifying the world.
+     *
+     * @param world The world of the explosion
+     * @param x The X coordinate of the origin
+     * @param y The Y coordinate of the origin
+     * @param z The Z coordinate of the origin
+     * @param size The strength of the explosion
+     * @param iterations The number of explosions collected with each engine
+     * @return The results, or null if the explosion is not supported by the
+     *     cached engines
+     */
+    @Nullable
+    public static ExplosionBenchmark run(World world, double x, double y, double z, float size, int iterations) {
+        final long seed = world.rand.nextLong();
+
+        // The same seed must produce the same blocks, in the same iteration order
+        final Set<BlockPos> expected = ExplosionRayCaster.collectVanilla(world, x, y, z, size, new Random(seed));
+        final Set<BlockPos> cached = ExplosionRayCaster.collect(world, null, x, y, z, size, new Random(seed), false);
+        final Set<BlockPos> parallel = ExplosionRayCaster.collect(world, null, x, y, z, size, new Random(seed), true);
+        if (cached == null || parallel == null) {
+            return null;
+        }
+
+        final ExplosionBenchmark result = new ExplosionBenchmark(expected.size(), isIdentical(expected, cached) && isIdentical(expected, parallel));
+        for (ExplosionEngine engine : ExplosionEngine.values()) {
+            final Random random = new Random(seed);
+            final long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                if (engine == ExplosionEngine.VANILLA) {
+                    ExplosionRayCaster.collectVanilla(world, x, y, z, size, random);
+                } else {
+                    ExplosionRayCaster.collect(world, null, x, y, z, size, random, engine == ExplosionEngine.PARALLEL);
+                }
+            }
+            result.times.put(engine, (System.nanoTime() - start) / iterations);
+        }
+        return result;
+    }
+
+    private static boolean isIdentical(Set<BlockPos> expected, Set<BlockPos> actual) {
+        return new ArrayList<>(expected).equals(new ArrayList<>(actual));
+    }
+
+    /**
+     * Returns the mean time to collect the blocks of one explosion.
+     *
+     * @param engine The engine
+     * @return The mean time in nanoseconds
+     */
+    public long getTime(ExplosionEngine engine) {
+        return this.times.get(engine);
+    }
+
+    public int getBlocks() {
+        return this.blocks;
+    }
+
+    public boolean isIdentical() {
+        return this.identical;
+    }
+
+}
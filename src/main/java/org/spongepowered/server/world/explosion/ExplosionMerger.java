@@ -0,0 +1,174 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.world.explosion;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.world.WorldServer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups the explosions of primed TNT in a world with identical origin and
+ * strength during a tick, and runs a single explosion for each group once
+ * all entities of the world were updated.
+ *
+ * <p>The explosion of a group applies its knockback multiplied by the
+ * number of merged explosions. Blocks are destroyed and entities damaged
+ * only once, the additional damage of identical explosions in the same
+ * tick is absorbed by the hurt resistance of the entities in Vanilla as
+ * well.</p>
+ */
+public final class ExplosionMerger {
+
+    // Only accessed from the thread ticking the world
+    private final Map<Key, Group> groups = new LinkedHashMap<>();
+    private int multiplier = 1;
+    private boolean exploding;
+
+    /**
+     * Adds an explosion to its group.
+     *
+     * @param exploder The exploding entity
+     * @param x The X coordinate of the origin
+     * @param y The Y coordinate of the origin
+     * @param z The Z coordinate of the origin
+     * @param strength The strength of the explosion
+     * @param isFlaming Whether the explosion sets fire to blocks
+     * @param isSmoking Whether the explosion destroys blocks
+     */
+    public void add(Entity exploder, double x, double y, double z, float strength, boolean isFlaming, boolean isSmoking) {
+        final Key key = new Key(x, y, z, strength, isFlaming, isSmoking);
+        final Group group = this.groups.get(key);
+        if (group == null) {
+            this.groups.put(key, new Group(exploder));
+        } else {
+            group.count++;
+        }
+    }
+
+    /**
+     * Returns the knockback multiplier of the explosion that is currently
+     * running.
+     *
+     * @return The number of merged explosions, or 1 if the explosion was not
+     *     merged
+     */
+    public int getMultiplier() {
+        return this.multiplier;
+    }
+
+    /**
+     * Returns whether the explosions are currently run by
+     * {@link #explode(WorldServer)}, so they must not be merged again.
+     *
+     * @return True if the merged explosions are running
+     */
+    public boolean isExploding() {
+        return this.exploding;
+    }
+
+    /**
+     * Runs the explosion of each group.
+     *
+     * @param world The world of the explosions
+     */
+    public void explode(WorldServer world) {
+        if (this.groups.isEmpty()) {
+            return;
+        }
+
+        final List<Map.Entry<Key, Group>> groups = new ArrayList<>(this.groups.entrySet());
+        this.groups.clear();
+
+        this.exploding = true;
+        try {
+            for (Map.Entry<Key, Group> entry : groups) {
+                final Key key = entry.getKey();
+                this.multiplier = entry.getValue().count;
+                world.newExplosion(entry.getValue().exploder, key.x, key.y, key.z, key.strength, key.isFlaming, key.isSmoking);
+            }
+        } finally {
+            this.multiplier = 1;
+            this.exploding = false;
+        }
+    }
+
+    private static final class Group {
+
+        final Entity exploder;
+        int count = 1;
+
+        Group(Entity exploder) {
+            this.exploder = exploder;
+        }
+
+    }
+
+    private static final class Key {
+
+        final double x;
+        final double y;
+        final double z;
+        final float strength;
+        final boolean isFlaming;
+        final boolean isSmoking;
+
+        Key(double x, double y, double z, float strength, boolean isFlaming, boolean isSmoking) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.strength = strength;
+            this.isFlaming = isFlaming;
+            this.isSmoking = isSmoking;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            final Key key = (Key) o;
+            return Double.compare(key.x, this.x) == 0 && Double.compare(key.y, this.y) == 0 && Double.compare(key.z, this.z) == 0
+                    && Float.compare(key.strength, this.strength) == 0 && this.isFlaming == key.isFlaming && this.isSmoking == key.isSmoking;
+        }
+
+        @Override
+        public int hashCode() {
+            long bits = Double.doubleToLongBits(this.x);
+            bits = 31 * bits + Double.doubleToLongBits(this.y);
+            bits = 31 * bits + Double.doubleToLongBits(this.z);
+            return 31 * (int) (bits ^ (bits >>> 32)) + Float.floatToIntBits(this.strength);
+        }
+
+    }
+
+}
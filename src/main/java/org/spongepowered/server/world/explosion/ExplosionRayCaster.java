@@ -0,0 +1,340 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.world.explosion;
+
+import com.google.common.collect.Sets;
+import net.minecraft.block.Block;
+import net.minecraft.block.material.Material;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.item.EntityTNTPrimed;
+import net.minecraft.entity.monster.EntityCreeper;
+import net.minecraft.entity.projectile.EntityLargeFireball;
+import net.minecraft.util.BlockPos;
+import net.minecraft.util.MathHelper;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldType;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import javax.annotation.Nullable;
+
+/**
+ * Collects the blocks affected by an explosion like
+ * {@link net.minecraft.world.Explosion#doExplosionA()}, but looks up the
+ * explosion resistance of each block in the blast radius only once.
+ *
+ * <p>The results are identical to Vanilla: The random strength of each ray
+ * is drawn in the same order, and the positions are added to the set in
+ * the same order. The resistance grid is only used if all chunks in the
+ * blast radius are loaded, since Vanilla would load them, and if the
+ * exploder doesn't change the resistance of blocks.</p>
+ */
+public final class ExplosionRayCaster {
+
+    private static final int GRID_SIZE = 16;
+    private static final int MAX_SIZE = 8;
+    private static final int WORLD_BORDER = 30000000;
+
+    private static final float STEP = 0.22500001F;
+    private static final double STEP_LENGTH = 0.30000001192092896D;
+
+    // The normalized directions of the rays on the surface of the 16x16x16 cube, in Vanilla order
+    private static final double[] RAYS;
+
+    static {
+        final List<double[]> rays = new ArrayList<>();
+        for (int j = 0; j < GRID_SIZE; ++j) {
+            for (int k = 0; k < GRID_SIZE; ++k) {
+                for (int l = 0; l < GRID_SIZE; ++l) {
+                    if (j == 0 || j == 15 || k == 0 || k == 15 || l == 0 || l == 15) {
+                        double d0 = (double) ((float) j / 15.0F * 2.0F - 1.0F);
+                        double d1 = (double) ((float) k / 15.0F * 2.0F - 1.0F);
+                        double d2 = (double) ((float) l / 15.0F * 2.0F - 1.0F);
+                        double d3 = Math.sqrt(d0 * d0 + d1 * d1 + d2 * d2);
+                        rays.add(new double[] {d0 / d3, d1 / d3, d2 / d3});
+                    }
+                }
+            }
+        }
+
+        RAYS = new double[rays.size() * 3];
+        for (int i = 0; i < rays.size(); i++) {
+            System.arraycopy(rays.get(i), 0, RAYS, i * 3, 3);
+        }
+    }
+
+    private ExplosionRayCaster() {
+    }
+
+    public static int getRayCount() {
+        return RAYS.length / 3;
+    }
+
+    /**
+     * Collects the affected blocks with the resistance grid.
+     *
+     * @param world The world of the explosion
+     * @param exploder The exploding entity
+     * @param x The X coordinate of the origin
+     * @param y The Y coordinate of the origin
+     * @param z The Z coordinate of the origin
+     * @param size The strength of the explosion
+     * @param random The random used for the strength of the rays
+     * @param parallel Whether to cast the rays on multiple threads
+     * @return The affected blocks, or null if the explosion is not supported
+     *     and must use the Vanilla implementation. The random is only used
+     *     if the blocks were collected
+     */
+    @Nullable
+    public static Set<BlockPos> collect(World world, @Nullable Entity exploder, double x, double y, double z, float size, Random random,
+            boolean parallel) {
+        // Other exploders (e.g. the wither) change the resistance of blocks or may prevent destroying them
+        if (exploder != null && exploder.getClass() != EntityTNTPrimed.class && exploder.getClass() != EntityCreeper.class
+                && exploder.getClass() != EntityLargeFireball.class) {
+            return null;
+        }
+        if (size > MAX_SIZE || world.getWorldType() == WorldType.DEBUG_WORLD) {
+            return null;
+        }
+
+        final ResistanceGrid grid = ResistanceGrid.create(world, exploder, x, y, z, size);
+        if (grid == null) {
+            return null;
+        }
+
+        final int rays = getRayCount();
+        final float[] strengths = new float[rays];
+        for (int i = 0; i < rays; i++) {
+            strengths[i] = size * (0.7F + random.nextFloat() * 0.6F);
+        }
+
+        @SuppressWarnings("unchecked")
+        final List<BlockPos>[] results = new List[rays];
+        IntStream stream = IntStream.range(0, rays);
+        if (parallel) {
+            stream = stream.parallel();
+        }
+        stream.forEach(i -> results[i] = castRay(grid, i, strengths[i], x, y, z));
+
+        // Add the positions in the same order as Vanilla to get the same iteration order
+        final Set<BlockPos> set = Sets.newHashSet();
+        for (List<BlockPos> result : results) {
+            set.addAll(result);
+        }
+        return set;
+    }
+
+    private static List<BlockPos> castRay(ResistanceGrid grid, int ray, float strength, double x, double y, double z) {
+        final double d0 = RAYS[ray * 3];
+        final double d1 = RAYS[ray * 3 + 1];
+        final double d2 = RAYS[ray * 3 + 2];
+
+        final List<BlockPos> result = new ArrayList<>();
+        float f = strength;
+        double d4 = x;
+        double d6 = y;
+        double d8 = z;
+
+        for (; f > 0.0F; f -= STEP) {
+            final int blockX = MathHelper.floor_double(d4);
+            final int blockY = MathHelper.floor_double(d6);
+            final int blockZ = MathHelper.floor_double(d8);
+
+            final float resistance = grid.getResistance(blockX, blockY, blockZ);
+            if (resistance >= 0) {
+                f -= (resistance + 0.3F) * 0.3F;
+            }
+
+            if (f > 0.0F) {
+                result.add(new BlockPos(blockX, blockY, blockZ));
+            }
+
+            d4 += d0 * STEP_LENGTH;
+            d6 += d1 * STEP_LENGTH;
+            d8 += d2 * STEP_LENGTH;
+        }
+
+        return result;
+    }
+
+    /**
+     * Collects the affected blocks exactly like Vanilla, looking up each
+     * block in the world. Used as reference for the benchmark.
+     *
+     * @param world The world of the explosion
+     * @param x The X coordinate of the origin
+     * @param y The Y coordinate of the origin
+     * @param z The Z coordinate of the origin
+     * @param size The strength of the explosion
+     * @param random The random used for the strength of the rays
+     * @return The affected blocks
+     */
+    public static Set<BlockPos> collectVanilla(World world, double x, double y, double z, float size, Random random) {
+        final Set<BlockPos> set = Sets.newHashSet();
+        for (int ray = 0; ray < getRayCount(); ray++) {
+            final double d0 = RAYS[ray * 3];
+            final double d1 = RAYS[ray * 3 + 1];
+            final double d2 = RAYS[ray * 3 + 2];
+
+            float f = size * (0.7F + random.nextFloat() * 0.6F);
+            double d4 = x;
+            double d6 = y;
+            double d8 = z;
+
+            for (; f > 0.0F; f -= STEP) {
+                final BlockPos pos = new BlockPos(d4, d6, d8);
+                final IBlockState state = world.getBlockState(pos);
+                if (state.getBlock().getMaterial() != Material.air) {
+                    f -= (state.getBlock().getExplosionResistance(null) + 0.3F) * 0.3F;
+                }
+
+                if (f > 0.0F) {
+                    set.add(pos);
+                }
+
+                d4 += d0 * STEP_LENGTH;
+                d6 += d1 * STEP_LENGTH;
+                d8 += d2 * STEP_LENGTH;
+            }
+        }
+        return set;
+    }
+
+    /**
+     * The explosion resistance of the blocks in the blast radius, looked up
+     * lazily from the chunk sections. Lookups from multiple threads may race,
+     * but always store the same value.
+     */
+    private static final class ResistanceGrid {
+
+        @Nullable private final Entity exploder;
+        private final Chunk[] chunks;
+        private final int minChunkX;
+        private final int minChunkZ;
+        private final int chunksX;
+
+        private final int minX;
+        private final int minY;
+        private final int minZ;
+        private final int sizeX;
+        private final int sizeY;
+        private final int sizeZ;
+
+        // NaN if not looked up yet, -1 for air, otherwise the exact resistance
+        private final float[] values;
+
+        private ResistanceGrid(@Nullable Entity exploder, Chunk[] chunks, int minChunkX, int minChunkZ, int chunksX, int minX, int minY,
+                int minZ, int maxX, int maxY, int maxZ) {
+            this.exploder = exploder;
+            this.chunks = chunks;
+            this.minChunkX = minChunkX;
+            this.minChunkZ = minChunkZ;
+            this.chunksX = chunksX;
+            this.minX = minX;
+            this.minY = minY;
+            this.minZ = minZ;
+            this.sizeX = maxX - minX + 1;
+            this.sizeY = maxY - minY + 1;
+            this.sizeZ = maxZ - minZ + 1;
+            this.values = new float[this.sizeX * this.sizeY * this.sizeZ];
+            Arrays.fill(this.values, Float.NaN);
+        }
+
+        @Nullable
+        static ResistanceGrid create(World world, @Nullable Entity exploder, double x, double y, double z, float size) {
+            // The furthest block a ray can reach: Each step reduces the strength by at least STEP
+            final int steps = MathHelper.ceiling_float_int(size * 1.3F / STEP) + 1;
+            final int radius = MathHelper.ceiling_double_int(steps * STEP_LENGTH) + 1;
+
+            final int minX = MathHelper.floor_double(x) - radius;
+            final int minY = MathHelper.floor_double(y) - radius;
+            final int minZ = MathHelper.floor_double(z) - radius;
+            final int maxX = MathHelper.floor_double(x) + radius;
+            final int maxY = MathHelper.floor_double(y) + radius;
+            final int maxZ = MathHelper.floor_double(z) + radius;
+            if (minX < -WORLD_BORDER || minZ < -WORLD_BORDER || maxX >= WORLD_BORDER || maxZ >= WORLD_BORDER) {
+                return null;
+            }
+
+            final int minChunkX = minX >> 4;
+            final int minChunkZ = minZ >> 4;
+            final int chunksX = (maxX >> 4) - minChunkX + 1;
+            final int chunksZ = (maxZ >> 4) - minChunkZ + 1;
+            final Chunk[] chunks = new Chunk[chunksX * chunksZ];
+            for (int cx = 0; cx < chunksX; cx++) {
+                for (int cz = 0; cz < chunksZ; cz++) {
+                    if (!world.getChunkProvider().chunkExists(minChunkX + cx, minChunkZ + cz)) {
+                        return null;
+                    }
+                    chunks[cx + cz * chunksX] = world.getChunkFromChunkCoords(minChunkX + cx, minChunkZ + cz);
+                }
+            }
+
+            return new ResistanceGrid(exploder, chunks, minChunkX, minChunkZ, chunksX, minX, minY, minZ, maxX, maxY, maxZ);
+        }
+
+        /**
+         * Returns the explosion resistance of a block.
+         *
+         * @return The resistance, or -1 for air
+         */
+        float getResistance(int x, int y, int z) {
+            final int index = ((x - this.minX) * this.sizeZ + (z - this.minZ)) * this.sizeY + (y - this.minY);
+            float value = this.values[index];
+            if (Float.isNaN(value)) {
+                this.values[index] = value = lookup(x, y, z);
+            }
+            return value;
+        }
+
+        private float lookup(int x, int y, int z) {
+            if (y < 0 || y >= 256) {
+                return -1;
+            }
+
+            final Chunk chunk = this.chunks[((x >> 4) - this.minChunkX) + ((z >> 4) - this.minChunkZ) * this.chunksX];
+            final ExtendedBlockStorage storage = chunk.getBlockStorageArray()[y >> 4];
+            if (storage == null) {
+                return -1;
+            }
+
+            final Block block = storage.get(x & 15, y & 15, z & 15).getBlock();
+            if (block.getMaterial() == Material.air) {
+                return -1;
+            }
+            return block.getExplosionResistance(this.exploder);
+        }
+
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.world.explosion;
+
+import net.minecraft.util.BlockPos;
+import org.spongepowered.api.block.BlockSnapshot;
+import org.spongepowered.api.block.BlockTypes;
+import org.spongepowered.api.data.Transaction;
+import org.spongepowered.api.world.World;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import javax.annotation.Nullable;
+
+/**
+ * An immutable list of the block transactions of an explosion that only
+ * creates the {@link BlockSnapshot} of a block when the transaction is
+ * accessed. Explosions that are not inspected by any listener don't create
+ * any snapshots.
+ */
+public final class LazyBlockTransactionList extends AbstractList<Transaction<BlockSnapshot>> implements RandomAccess {
+
+    private final World world;
+    private final List<BlockPos> positions;
+    @Nullable private Transaction<BlockSnapshot>[] transactions;
+
+    public LazyBlockTransactionList(World world, List<BlockPos> positions) {
+        this.world = world;
+        this.positions = positions;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Transaction<BlockSnapshot> get(int index) {
+        if (this.transactions == null) {
+            this.transactions = new Transaction[this.positions.size()];
+        }
+
+        Transaction<BlockSnapshot> transaction = this.transactions[index];
+        if (transaction == null) {
+            final BlockPos pos = this.positions.get(index);
+            final BlockSnapshot snapshot = this.world.createSnapshot(pos.getX(), pos.getY(), pos.getZ());
+            this.transactions[index] = transaction = new Transaction<>(snapshot, snapshot.withState(BlockTypes.AIR.getDefaultState()));
+        }
+        return transaction;
+    }
+
+    @Override
+    public int size() {
+        return this.positions.size();
+    }
+
+    /**
+     * Returns the transaction at the specified index if it was accessed.
+     * Transactions that were not accessed are valid and destroy the block
+     * at their original position.
+     *
+     * @param index The index of the transaction
+     * @return The transaction, or null if it was not created yet
+     */
+    @Nullable
+    public Transaction<BlockSnapshot> getIfCreated(int index) {
+        return this.transactions != null ? this.transactions[index] : null;
+    }
+
+    public BlockPos getPosition(int index) {
+        return this.positions.get(index);
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.world.explosion;
+
+import com.google.common.collect.Sets;
+import net.minecraft.util.BlockPos;
+import net.minecraft.world.World;
+
+import java.util.Set;
+
+/**
+ * Defers the light updates of the blocks changed by an explosion until all
+ * blocks were changed, and runs them only once for each position.
+ *
+ * <p>Without deferring, each destroyed block spreads the light into the
+ * neighbouring blocks that are destroyed right after it. Run at the end,
+ * the light is only spread once through the final blocks.</p>
+ */
+public final class LightUpdateBatch {
+
+    // Only accessed from the thread ticking the world
+    private final Set<BlockPos> positions = Sets.newLinkedHashSet();
+    private int depth;
+
+    private long requested;
+    private long executed;
+
+    /**
+     * Starts deferring the light updates. Must be followed by a call to
+     * {@link #end(World)}.
+     */
+    public void begin() {
+        this.depth++;
+    }
+
+    public boolean isDeferring() {
+        return this.depth > 0;
+    }
+
+    /**
+     * Defers the light update of a block.
+     *
+     * @param pos The position of the changed block
+     */
+    public void add(BlockPos pos) {
+        this.requested++;
+        this.positions.add(pos);
+    }
+
+    /**
+     * Stops deferring the light updates and runs the deferred updates.
+     *
+     * @param world The world of the changed blocks
+     */
+    public void end(World world) {
+        if (--this.depth > 0) {
+            return;
+        }
+
+        this.executed += this.positions.size();
+        for (BlockPos pos : this.positions) {
+            world.checkLight(pos);
+        }
+        this.positions.clear();
+    }
+
+    /**
+     * Runs the light updates left by an explosion that failed before
+     * {@link #end(World)} was called and stops deferring. Called before
+     * each tick of the world, so a failed explosion doesn't defer the light
+     * updates of the world forever.
+     *
+     * @param world The world of the changed blocks
+     */
+    public void reset(World world) {
+        if (this.depth > 0 || !this.positions.isEmpty()) {
+            this.depth = 1;
+            end(world);
+        }
+    }
+
+    /**
+     * Returns the number of light updates requested by the changed blocks.
+     *
+     * @return The requested light updates
+     */
+    public long getRequested() {
+        return this.requested;
+    }
+
+    /**
+     * Returns the number of light updates that were actually run.
+     *
+     * @return The executed light updates
+     */
+    public long getExecuted() {
+        return this.executed;
+    }
+
+}
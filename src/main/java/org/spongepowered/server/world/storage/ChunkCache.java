@@ -0,0 +1,188 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.world.storage;
+
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.world.ChunkCoordIntPair;
+import org.spongepowered.server.SpongeVanilla;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.InflaterInputStream;
+
+import javax.annotation.Nullable;
+
+/**
+ * Keeps the compressed data of recently unloaded chunks of a world in
+ * memory, so chunks that are loaded again shortly after are not read from
+ * the region file. The least recently unloaded chunks are evicted once the
+ * configured memory cap is reached.
+ *
+ * <p>Chunks are added when the data of an unloaded chunk is written by the
+ * chunk I/O thread. Any other write of a cached chunk removes it from the
+ * cache, so the cached data is never older than the data in the region
+ * file. Loading a chunk removes it from the cache as well.</p>
+ */
+public final class ChunkCache {
+
+    // Marked on the main thread before the chunk is saved
+    private final Set<Long> unloaded = ConcurrentHashMap.newKeySet();
+
+    // Compressed NBT data, in least recently unloaded order
+    private final Map<Long, byte[]> entries = new LinkedHashMap<>();
+    private long size;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private static long getMaxSize() {
+        return SpongeVanilla.INSTANCE.getConfig().getWorld().getChunkCacheSize() * 1024 * 1024;
+    }
+
+    /**
+     * Marks a chunk as unloaded before it is saved, so its data is cached
+     * when it is written.
+     *
+     * @param x The chunk X coordinate
+     * @param z The chunk Z coordinate
+     */
+    public void markUnloaded(int x, int z) {
+        if (getMaxSize() > 0) {
+            this.unloaded.add(ChunkCoordIntPair.chunkXZ2Int(x, z));
+        }
+    }
+
+    /**
+     * Called by the chunk I/O thread before the data of a chunk is written
+     * to the region file.
+     *
+     * @param x The chunk X coordinate
+     * @param z The chunk Z coordinate
+     * @param compound The written data
+     * @throws IOException If the data could not be compressed
+     */
+    public void onWrite(int x, int z, NBTTagCompound compound) throws IOException {
+        final long key = ChunkCoordIntPair.chunkXZ2Int(x, z);
+        final long maxSize = getMaxSize();
+        if (!this.unloaded.remove(key) || maxSize <= 0) {
+            synchronized (this) {
+                remove(key);
+            }
+            return;
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompressedStreamTools.write(compound, new DataOutputStream(out));
+        final byte[] data = ChunkCodec.ZLIB.compress(out.toByteArray(), Deflater.BEST_SPEED);
+
+        synchronized (this) {
+            remove(key);
+            this.entries.put(key, data);
+            this.size += data.length;
+
+            final Iterator<byte[]> itr = this.entries.values().iterator();
+            while (this.size > maxSize && itr.hasNext()) {
+                this.size -= itr.next().length;
+                itr.remove();
+                this.evictions++;
+            }
+        }
+    }
+
+    /**
+     * Removes a chunk from the cache and returns its data.
+     *
+     * @param x The chunk X coordinate
+     * @param z The chunk Z coordinate
+     * @return The stream to read the NBT data from, or null if the chunk is
+     *     not cached
+     */
+    @Nullable
+    public DataInputStream take(int x, int z) {
+        final byte[] data;
+        synchronized (this) {
+            data = remove(ChunkCoordIntPair.chunkXZ2Int(x, z));
+            if (data != null) {
+                this.hits++;
+            } else if (getMaxSize() > 0) {
+                this.misses++;
+            }
+        }
+
+        return data != null ? new DataInputStream(new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(data)))) : null;
+    }
+
+    @Nullable
+    private byte[] remove(long key) {
+        final byte[] data = this.entries.remove(key);
+        if (data != null) {
+            this.size -= data.length;
+        }
+        return data;
+    }
+
+    public synchronized int getCount() {
+        return this.entries.size();
+    }
+
+    /**
+     * Returns the memory used by the compressed data of the cached chunks.
+     *
+     * @return The size in bytes
+     */
+    public synchronized long getSize() {
+        return this.size;
+    }
+
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    public synchronized long getEvictions() {
+        return this.evictions;
+    }
+
+    public synchronized double getHitRate() {
+        final long total = this.hits + this.misses;
+        return total > 0 ? this.hits / (double) total : 0;
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.world.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.annotation.Nullable;
+
+/**
+ * The compression formats of chunks in a region file. The ID is stored in
+ * front of the data of each chunk, so chunks with different codecs can be
+ * mixed in the same region file.
+ */
+public enum ChunkCodec {
+
+    /**
+     * GZip compression, supported by Vanilla but not used by default.
+     */
+    GZIP(1) {
+        @Override
+        public InputStream decompress(InputStream in) throws IOException {
+            return new GZIPInputStream(in);
+        }
+
+        @Override
+        public byte[] compress(byte[] data, int level) throws IOException {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4);
+            try (GZIPOutputStream gzipOut = new GZIPOutputStream(out) {
+                {
+                    this.def.setLevel(level);
+                }
+            }) {
+                gzipOut.write(data);
+            }
+            return out.toByteArray();
+        }
+    },
+
+    /**
+     * Zlib compression, the default of Vanilla. Chunks compressed with any
+     * level can be read by Vanilla.
+     */
+    ZLIB(2) {
+        @Override
+        public InputStream decompress(InputStream in) {
+            return new InflaterInputStream(in);
+        }
+
+        @Override
+        public byte[] compress(byte[] data, int level) throws IOException {
+            final Deflater deflater = new Deflater(level);
+            try {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4);
+                try (DeflaterOutputStream deflaterOut = new DeflaterOutputStream(out, deflater)) {
+                    deflaterOut.write(data);
+                }
+                return out.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+    },
+
+    /**
+     * No compression. Uses the same ID as later Minecraft versions, but
+     * can't be read by Vanilla 1.8. SpongeVanilla reads it with both region
+     * storages, but only writes it if incompatible chunk codecs are
+     * allowed in the configuration.
+     */
+    NONE(3) {
+        @Override
+        public InputStream decompress(InputStream in) {
+            return in;
+        }
+
+        @Override
+        public byte[] compress(byte[] data, int level) {
+            return data;
+        }
+    };
+
+    private final byte id;
+
+    ChunkCodec(int id) {
+        this.id = (byte) id;
+    }
+
+    public byte getId() {
+        return this.id;
+    }
+
+    public abstract InputStream decompress(InputStream in) throws IOException;
+
+    public abstract byte[] compress(byte[] data, int level) throws IOException;
+
+    @Nullable
+    public static ChunkCodec getById(byte id) {
+        for (ChunkCodec codec : values()) {
+            if (codec.id == id) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+}
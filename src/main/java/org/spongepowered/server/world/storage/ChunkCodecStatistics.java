@@ -0,0 +1,91 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.world.storage;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The number of chunks, bytes and the time spent on compressing chunks with
+ * a {@link ChunkCodec}.
+ */
+public final class ChunkCodecStatistics {
+
+    private static final Map<ChunkCodec, ChunkCodecStatistics> statistics = new EnumMap<>(ChunkCodec.class);
+
+    static {
+        for (ChunkCodec codec : ChunkCodec.values()) {
+            statistics.put(codec, new ChunkCodecStatistics());
+        }
+    }
+
+    private final AtomicLong chunks = new AtomicLong();
+    private final AtomicLong uncompressedBytes = new AtomicLong();
+    private final AtomicLong compressedBytes = new AtomicLong();
+    private final AtomicLong time = new AtomicLong();
+
+    private ChunkCodecStatistics() {
+    }
+
+    public static ChunkCodecStatistics get(ChunkCodec codec) {
+        return statistics.get(codec);
+    }
+
+    void record(int uncompressed, int compressed, long nanos) {
+        this.chunks.incrementAndGet();
+        this.uncompressedBytes.addAndGet(uncompressed);
+        this.compressedBytes.addAndGet(compressed);
+        this.time.addAndGet(nanos);
+    }
+
+    public long getChunks() {
+        return this.chunks.get();
+    }
+
+    public long getUncompressedBytes() {
+        return this.uncompressedBytes.get();
+    }
+
+    /**
+     * Returns the number of bytes written to the region files, without the
+     * padding to whole sectors.
+     *
+     * @return The number of compressed bytes
+     */
+    public long getCompressedBytes() {
+        return this.compressedBytes.get();
+    }
+
+    /**
+     * Returns the time spent on compressing chunks.
+     *
+     * @return The compression time in nanoseconds
+     */
+    public long getTime() {
+        return this.time.get();
+    }
+
+}
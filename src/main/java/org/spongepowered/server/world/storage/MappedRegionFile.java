@@ -0,0 +1,395 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.world.storage;
+
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import org.spongepowered.common.SpongeImpl;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+import javax.annotation.Nullable;
+
+/**
+ * A region file in the Vanilla Anvil format that is read through a memory
+ * mapping and written with a {@link FileChannel}.
+ *
+ * <p>Written chunks are kept in memory until {@link #flush()} is called, which
+ * allocates the sectors for all of them using an in-memory bitmap of the used
+ * sectors, writes them in file order and updates the header once.</p>
+ *
+ * <p>Chunks are compressed with the configured {@link ChunkCodec}. Chunks
+ * written with any other codec can still be read.</p>
+ */
+public final class MappedRegionFile {
+
+    private static final int SECTOR_SIZE = 4096;
+    private static final int HEADER_SECTORS = 2;
+    private static final int MAX_SECTORS = 255;
+
+    private final File file;
+    private final FileChannel channel;
+    private final int[] offsets = new int[1024];
+    private final int[] timestamps = new int[1024];
+    private final BitSet usedSectors = new BitSet();
+    private int sectorCount;
+
+    // Compressed chunk data that was not written to the file yet, prefixed with the codec ID
+    private final TIntObjectMap<byte[]> pending = new TIntObjectHashMap<>();
+    @Nullable private MappedByteBuffer mapping;
+    private boolean closed;
+
+    public MappedRegionFile(File file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        // Pad the file to whole sectors like Vanilla
+        long size = this.channel.size();
+        if (size < HEADER_SECTORS * SECTOR_SIZE || size % SECTOR_SIZE != 0) {
+            final long padded = Math.max(HEADER_SECTORS * SECTOR_SIZE, (size + SECTOR_SIZE - 1) / SECTOR_SIZE * SECTOR_SIZE);
+            writeFully(ByteBuffer.allocate((int) (padded - size)), size);
+            size = padded;
+        }
+
+        this.sectorCount = (int) (size / SECTOR_SIZE);
+        this.usedSectors.set(0, HEADER_SECTORS);
+
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SECTORS * SECTOR_SIZE);
+        while (header.hasRemaining() && this.channel.read(header, header.position()) >= 0) {
+            // Read the complete header
+        }
+        header.flip();
+
+        for (int i = 0; i < this.offsets.length; i++) {
+            final int offset = header.getInt();
+            this.offsets[i] = offset;
+            final int start = offset >> 8;
+            final int count = offset & 0xFF;
+            if (offset != 0 && start + count <= this.sectorCount) {
+                this.usedSectors.set(start, start + count);
+            }
+        }
+        for (int i = 0; i < this.timestamps.length; i++) {
+            this.timestamps[i] = header.getInt();
+        }
+    }
+
+    public File getFile() {
+        return this.file;
+    }
+
+    @Nullable
+    public DataInputStream getChunkInputStream(int x, int z) throws IOException {
+        final byte[] data;
+        synchronized (this) {
+            if (this.closed) {
+                // Closed in the meantime, read from the region file that replaced it
+                data = null;
+            } else {
+                data = readRaw(getIndex(x, z));
+                if (data == null) {
+                    return null;
+                }
+            }
+        }
+
+        if (data == null) {
+            return MappedRegionFileCache.getRegionFile(this.file).getChunkInputStream(x, z);
+        }
+
+        final ChunkCodec codec = ChunkCodec.getById(data[0]);
+        if (codec == null) {
+            return null;
+        }
+        return new DataInputStream(new BufferedInputStream(codec.decompress(new ByteArrayInputStream(data, 1, data.length - 1))));
+    }
+
+    public DataOutputStream getChunkOutputStream(int x, int z) {
+        // The data is compressed at once when the stream is closed
+        return new DataOutputStream(new ChunkBuffer(getIndex(x, z)));
+    }
+
+    /**
+     * Returns the data of a chunk prefixed with the ID of its codec.
+     */
+    @Nullable
+    private byte[] readRaw(int index) throws IOException {
+        final byte[] data = this.pending.get(index);
+        if (data != null) {
+            return data;
+        }
+
+        final int offset = this.offsets[index];
+        final int start = offset >> 8;
+        final int count = offset & 0xFF;
+        if (offset == 0 || start + count > this.sectorCount) {
+            return null;
+        }
+
+        final ByteBuffer buffer = getMapping().duplicate();
+        buffer.position(start * SECTOR_SIZE);
+        final int length = buffer.getInt();
+        if (length <= 0 || length > count * SECTOR_SIZE) {
+            return null;
+        }
+
+        final byte[] result = new byte[length];
+        buffer.get(result);
+        return result;
+    }
+
+    /**
+     * Compresses a chunk again with the specified codec if it was written
+     * with a different codec. Used to migrate existing region files.
+     *
+     * @param index The index of the chunk in the region file
+     * @param codec The new codec
+     * @param level The compression level
+     * @return True if the chunk was compressed again
+     * @throws IOException If the chunk could not be read
+     */
+    synchronized boolean recompress(int index, ChunkCodec codec, int level) throws IOException {
+        if (this.closed || this.pending.containsKey(index)) {
+            return false; // Just saved, already uses the configured codec
+        }
+
+        final byte[] data = readRaw(index);
+        if (data == null || data[0] == codec.getId()) {
+            return false;
+        }
+
+        final ChunkCodec current = ChunkCodec.getById(data[0]);
+        if (current == null) {
+            return false;
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+        try (InputStream in = current.decompress(new ByteArrayInputStream(data, 1, data.length - 1))) {
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+            }
+        }
+
+        writePending(index, compress(codec, level, out.toByteArray()));
+        return true;
+    }
+
+    private static byte[] compress(ChunkCodec codec, int level, byte[] data) throws IOException {
+        final long start = System.nanoTime();
+        final byte[] compressed = codec.compress(data, level);
+        ChunkCodecStatistics.get(codec).record(data.length, compressed.length, System.nanoTime() - start);
+
+        final byte[] result = new byte[compressed.length + 1];
+        result[0] = codec.getId();
+        System.arraycopy(compressed, 0, result, 1, compressed.length);
+        return result;
+    }
+
+    /**
+     * Returns the number of chunks that were written, but not flushed to the
+     * file yet.
+     *
+     * @return The number of pending chunks
+     */
+    public synchronized int getPendingCount() {
+        return this.pending.size();
+    }
+
+    void writePending(int index, byte[] data) throws IOException {
+        synchronized (this) {
+            if (!this.closed) {
+                this.pending.put(index, data);
+                return;
+            }
+        }
+
+        // Closed in the meantime, write to the region file that replaced it (outside the lock of this file)
+        MappedRegionFileCache.getRegionFile(this.file).writePending(index, data);
+    }
+
+    /**
+     * Writes all pending chunks to the file.
+     *
+     * @throws IOException If the chunks could not be written
+     */
+    public synchronized void flush() throws IOException {
+        if (this.pending.isEmpty()) {
+            return;
+        }
+
+        final int timestamp = (int) (System.currentTimeMillis() / 1000);
+
+        // The header on disk still points to the old sectors until it is written, so they are only freed afterwards
+        final int[] newOffsets = this.offsets.clone();
+        final int[] newTimestamps = this.timestamps.clone();
+        final BitSet freedSectors = new BitSet();
+        final BitSet allocatedSectors = new BitSet();
+        final int oldSectorCount = this.sectorCount;
+
+        // Allocate the sectors for all chunks first to write them in file order
+        for (int index : this.pending.keys()) {
+            final int sectors = (this.pending.get(index).length + 4 + SECTOR_SIZE - 1) / SECTOR_SIZE;
+            if (sectors > MAX_SECTORS) {
+                SpongeImpl.getLogger().error("Chunk {} in region file {} is too large to be saved", index, this.file);
+                this.pending.remove(index);
+                continue;
+            }
+
+            final int offset = newOffsets[index];
+            if (offset != 0 && (offset & 0xFF) == sectors) {
+                continue; // Overwrite in place
+            }
+
+            if (offset != 0) {
+                freedSectors.set(offset >> 8, (offset >> 8) + (offset & 0xFF));
+            }
+            final int start = allocate(sectors);
+            this.usedSectors.set(start, start + sectors);
+            allocatedSectors.set(start, start + sectors);
+            newOffsets[index] = start << 8 | sectors;
+        }
+
+        final int[] order = this.pending.keys();
+        sortByOffset(order, newOffsets);
+
+        try {
+            for (int index : order) {
+                final byte[] data = this.pending.get(index);
+                final int offset = newOffsets[index];
+                final ByteBuffer buffer = ByteBuffer.allocate((offset & 0xFF) * SECTOR_SIZE);
+                buffer.putInt(data.length).put(data).clear();
+                writeFully(buffer, (long) (offset >> 8) * SECTOR_SIZE);
+                newTimestamps[index] = timestamp;
+            }
+
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SECTORS * SECTOR_SIZE);
+            header.asIntBuffer().put(newOffsets).put(newTimestamps);
+            writeFully(header, 0);
+        } catch (IOException | RuntimeException e) {
+            // Keep the previous state, the chunks stay pending for the next flush
+            this.usedSectors.andNot(allocatedSectors);
+            this.sectorCount = oldSectorCount;
+            this.mapping = null;
+            throw e;
+        }
+
+        System.arraycopy(newOffsets, 0, this.offsets, 0, newOffsets.length);
+        System.arraycopy(newTimestamps, 0, this.timestamps, 0, newTimestamps.length);
+        this.usedSectors.andNot(freedSectors);
+        this.pending.clear();
+    }
+
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            // The mapping is released once it is garbage collected
+            this.closed = true;
+            this.mapping = null;
+            this.channel.close();
+        }
+    }
+
+    private int allocate(int sectors) {
+        int start = this.usedSectors.nextClearBit(HEADER_SECTORS);
+        while (start < this.sectorCount) {
+            final int end = this.usedSectors.nextSetBit(start);
+            if (end < 0 || end - start >= sectors) {
+                break;
+            }
+            start = this.usedSectors.nextClearBit(end);
+        }
+
+        if (start + sectors > this.sectorCount) {
+            // Append to the end of the file, the mapping is updated on the next read
+            this.sectorCount = start + sectors;
+            this.mapping = null;
+        }
+        return start;
+    }
+
+    private MappedByteBuffer getMapping() throws IOException {
+        MappedByteBuffer mapping = this.mapping;
+        if (mapping == null) {
+            this.mapping = mapping = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, (long) this.sectorCount * SECTOR_SIZE);
+        }
+        return mapping;
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += this.channel.write(buffer, position);
+        }
+    }
+
+    private static void sortByOffset(int[] indices, int[] offsets) {
+        // Insertion sort, the number of pending chunks is small
+        for (int i = 1; i < indices.length; i++) {
+            final int index = indices[i];
+            int j = i - 1;
+            while (j >= 0 && offsets[indices[j]] > offsets[index]) {
+                indices[j + 1] = indices[j];
+                j--;
+            }
+            indices[j + 1] = index;
+        }
+    }
+
+    private static int getIndex(int x, int z) {
+        return (x & 31) + (z & 31) * 32;
+    }
+
+    private final class ChunkBuffer extends ByteArrayOutputStream {
+
+        private final int index;
+
+        ChunkBuffer(int index) {
+            super(8096);
+            this.index = index;
+        }
+
+        @Override
+        public void close() throws IOException {
+            final ChunkCodec codec = MappedRegionFileCache.getCodec();
+            writePending(this.index, compress(codec, MappedRegionFileCache.getCompressionLevel(), toByteArray()));
+        }
+
+    }
+
+}
@@ -0,0 +1,199 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.world.storage;
+
+import org.spongepowered.common.SpongeImpl;
+import org.spongepowered.server.SpongeVanilla;
+import org.spongepowered.server.config.VanillaConfig;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * The replacement for {@link net.minecraft.world.chunk.storage.RegionFileCache}
+ * if the memory mapped region storage is enabled.
+ */
+public final class MappedRegionFileCache {
+
+    private static final int MAX_OPEN_FILES = 256;
+    private static final int MAX_PENDING_CHUNKS = 128;
+
+    private static final Map<File, MappedRegionFile> regions = new HashMap<>();
+    @Nullable private static Boolean enabled;
+
+    private MappedRegionFileCache() {
+    }
+
+    /**
+     * Returns whether the memory mapped region storage is used. The setting
+     * is only read once, so the storage isn't switched while region files are
+     * open.
+     *
+     * @return True if the memory mapped region storage is enabled
+     */
+    public static boolean isEnabled() {
+        if (enabled == null) {
+            enabled = SpongeVanilla.INSTANCE.getConfig().getWorld().getRegionStorage() == RegionStorage.MAPPED;
+        }
+        return enabled;
+    }
+
+    /**
+     * Returns the codec new chunks are compressed with. Chunks that can't be
+     * read by Vanilla are only written if explicitly allowed.
+     *
+     * @return The chunk codec
+     */
+    public static ChunkCodec getCodec() {
+        final VanillaConfig.WorldCategory config = SpongeVanilla.INSTANCE.getConfig().getWorld();
+        final ChunkCodec codec = config.getChunkCodec();
+        if (codec == ChunkCodec.NONE && !config.isAllowIncompatibleChunkCodec()) {
+            return ChunkCodec.ZLIB;
+        }
+        return codec;
+    }
+
+    static int getCompressionLevel() {
+        return SpongeVanilla.INSTANCE.getConfig().getWorld().getChunkCompressionLevel();
+    }
+
+    private static MappedRegionFile getRegionFile(File worldDir, int chunkX, int chunkZ) throws IOException {
+        return getRegionFile(new File(new File(worldDir, "region"), "r." + (chunkX >> 5) + "." + (chunkZ >> 5) + ".mca"));
+    }
+
+    static synchronized MappedRegionFile getRegionFile(File file) throws IOException {
+        MappedRegionFile region = regions.get(file);
+        if (region == null) {
+            if (regions.size() >= MAX_OPEN_FILES) {
+                clear();
+            }
+
+            file.getParentFile().mkdirs();
+            region = new MappedRegionFile(file);
+            regions.put(file, region);
+        }
+        return region;
+    }
+
+    @Nullable
+    public static DataInputStream getChunkInputStream(File worldDir, int chunkX, int chunkZ) {
+        try {
+            return getRegionFile(worldDir, chunkX, chunkZ).getChunkInputStream(chunkX, chunkZ);
+        } catch (IOException e) {
+            SpongeImpl.getLogger().error("Failed to read chunk {}, {} from {}", chunkX, chunkZ, worldDir, e);
+            return null;
+        }
+    }
+
+    @Nullable
+    public static DataOutputStream getChunkOutputStream(File worldDir, int chunkX, int chunkZ) {
+        try {
+            final MappedRegionFile region = getRegionFile(worldDir, chunkX, chunkZ);
+            if (region.getPendingCount() >= MAX_PENDING_CHUNKS) {
+                region.flush();
+            }
+            return region.getChunkOutputStream(chunkX, chunkZ);
+        } catch (IOException e) {
+            SpongeImpl.getLogger().error("Failed to write chunk {}, {} to {}", chunkX, chunkZ, worldDir, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the pending chunks of all region files of a world.
+     *
+     * @param worldDir The world directory
+     */
+    public static void flush(File worldDir) {
+        final File regionDir = new File(worldDir, "region");
+        for (MappedRegionFile region : getRegionFiles()) {
+            if (regionDir.equals(region.getFile().getParentFile())) {
+                try {
+                    region.flush();
+                } catch (IOException e) {
+                    SpongeImpl.getLogger().error("Failed to write region file {}", region.getFile(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes and closes all region files in the specified region directory.
+     *
+     * @param regionDir The region directory
+     */
+    public static synchronized void release(File regionDir) {
+        final Iterator<MappedRegionFile> itr = regions.values().iterator();
+        while (itr.hasNext()) {
+            final MappedRegionFile region = itr.next();
+            if (regionDir.equals(region.getFile().getParentFile())) {
+                close(region);
+                itr.remove();
+            }
+        }
+    }
+
+    static synchronized boolean isOpen(File file) {
+        return regions.containsKey(file);
+    }
+
+    static synchronized void release(MappedRegionFile region) {
+        if (regions.remove(region.getFile()) == region) {
+            close(region);
+        }
+    }
+
+    /**
+     * Writes and closes all region files.
+     */
+    public static synchronized void clear() {
+        for (MappedRegionFile region : regions.values()) {
+            close(region);
+        }
+        regions.clear();
+    }
+
+    private static synchronized List<MappedRegionFile> getRegionFiles() {
+        return new ArrayList<>(regions.values());
+    }
+
+    private static void close(MappedRegionFile region) {
+        try {
+            region.close();
+        } catch (IOException e) {
+            SpongeImpl.getLogger().error("Failed to close region file {}", region.getFile(), e);
+        }
+    }
+
+}
@@ -0,0 +1,173 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.world.storage;
+
+import org.spongepowered.common.SpongeImpl;
+import org.spongepowered.server.SpongeVanilla;
+import org.spongepowered.server.config.VanillaConfig;
+import org.spongepowered.server.world.TickedWorld;
+import org.spongepowered.server.world.VanillaDimensionManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+/**
+ * Compresses the chunks in region files of the loaded worlds again with the
+ * configured {@link ChunkCodec} in the background.
+ *
+ * <p>Only region files that are cold, i.e. were not modified for a while and
+ * are not open, are migrated. The migrator sleeps between chunks to keep
+ * the disk and CPU usage low.</p>
+ *
+ * <p>The migrator is stopped with a flag that is checked between chunks
+ * instead of interrupting the thread: Interrupting a thread that is
+ * writing to a {@link java.nio.channels.FileChannel} closes the channel,
+ * which is shared with the server.</p>
+ */
+public final class RegionMigrator implements Runnable {
+
+    private static final long CHUNK_DELAY = 5;
+    private static final long SCAN_DELAY = TimeUnit.MINUTES.toMillis(5);
+
+    private static final AtomicLong migratedRegions = new AtomicLong();
+    private static final AtomicLong migratedChunks = new AtomicLong();
+    private static final Object pauseLock = new Object();
+    private static volatile boolean running;
+    @Nullable private static Thread thread;
+
+    private RegionMigrator() {
+    }
+
+    public static synchronized void start() {
+        if (thread == null) {
+            running = true;
+            thread = new Thread(new RegionMigrator(), "Server Region Migrator");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.start();
+        }
+    }
+
+    public static synchronized void stop() {
+        if (thread != null) {
+            running = false;
+            synchronized (pauseLock) {
+                pauseLock.notifyAll();
+            }
+
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    public static long getMigratedRegions() {
+        return migratedRegions.get();
+    }
+
+    public static long getMigratedChunks() {
+        return migratedChunks.get();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            for (TickedWorld ticked : VanillaDimensionManager.getTickedWorlds()) {
+                final File[] files = new File(ticked.getWorld().getSaveHandler().getWorldDirectory(), "region").listFiles();
+                if (files != null) {
+                    for (File file : files) {
+                        if (!running) {
+                            return; // Server is stopping
+                        }
+                        if (file.getName().endsWith(".mca")) {
+                            migrate(file);
+                        }
+                    }
+                }
+            }
+
+            pause(SCAN_DELAY);
+        }
+    }
+
+    private static void pause(long millis) {
+        synchronized (pauseLock) {
+            if (running) {
+                try {
+                    pauseLock.wait(millis);
+                } catch (InterruptedException e) {
+                    running = false;
+                }
+            }
+        }
+    }
+
+    private static void migrate(File file) {
+        final VanillaConfig.WorldCategory config = SpongeVanilla.INSTANCE.getConfig().getWorld();
+        if (MappedRegionFileCache.isOpen(file)
+                || System.currentTimeMillis() - file.lastModified() < TimeUnit.MINUTES.toMillis(config.getChunkMigrationColdTime())) {
+            return;
+        }
+
+        final MappedRegionFile region;
+        try {
+            // Open through the cache so the server uses the same instance if it needs the region in the meantime
+            region = MappedRegionFileCache.getRegionFile(file);
+        } catch (IOException e) {
+            SpongeImpl.getLogger().error("Failed to open region file {} for migration", file, e);
+            return;
+        }
+
+        int chunks = 0;
+        try {
+            // Stop between chunks, but always write the chunks migrated so far
+            for (int index = 0; index < 1024 && running; index++) {
+                if (region.recompress(index, MappedRegionFileCache.getCodec(), config.getChunkCompressionLevel())) {
+                    chunks++;
+                    pause(CHUNK_DELAY);
+                }
+            }
+            region.flush();
+        } catch (IOException e) {
+            SpongeImpl.getLogger().error("Failed to migrate region file {}", file, e);
+        } finally {
+            MappedRegionFileCache.release(region);
+        }
+
+        if (chunks > 0) {
+            migratedRegions.incrementAndGet();
+            migratedChunks.addAndGet(chunks);
+            SpongeImpl.getLogger().debug("Migrated {} chunks in region file {} to {}", chunks, file, MappedRegionFileCache.getCodec());
+        }
+    }
+
+}
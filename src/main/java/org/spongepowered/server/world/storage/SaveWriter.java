@@ -0,0 +1,233 @@
+/*
+ * This file is part of Sponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.server.world.storage;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.minecraft.nbt.NBTTagCompound;
+import org.spongepowered.common.SpongeImpl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+/**
+ * Writes the world info (level.dat) and the player data on a separate
+ * thread during the autosave, and optionally all player data.
+ *
+ * <p>The NBT data is created on the main thread while the writes are
+ * deferred. The Vanilla save method is then called again on the writer
+ * thread, where it uses the snapshot instead of serializing the live
+ * objects again. Writes that are not deferred wait for the pending writes,
+ * so older data never overwrites newer data.</p>
+ *
+ * <p>If the same file is saved again before its pending write started, the
+ * pending write is updated with the newer snapshot instead.</p>
+ */
+public final class SaveWriter {
+
+    private static final ThreadLocal<NBTTagCompound> snapshot = new ThreadLocal<>();
+    private static final AtomicInteger pending = new AtomicInteger();
+    private static final Map<Object, PendingWrite> pendingWrites = new HashMap<>();
+    private static long coalescedWrites;
+
+    @Nullable private static ExecutorService executor;
+    @Nullable private static volatile Thread thread;
+    private static boolean deferring; // Only accessed from the main thread
+
+    private SaveWriter() {
+    }
+
+    /**
+     * Runs the specified task on the main thread with all world info and
+     * player data writes deferred to the writer thread.
+     *
+     * @param task The task that saves the data
+     */
+    public static void defer(Runnable task) {
+        deferring = true;
+        try {
+            task.run();
+        } finally {
+            deferring = false;
+        }
+    }
+
+    public static boolean isDeferring() {
+        return deferring && !isWriterThread();
+    }
+
+    public static boolean isWriterThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Submits a write to the writer thread.
+     *
+     * @param key The key of the written file, a pending write with the same
+     *     key is replaced
+     * @param data The snapshot of the data to write, returned by
+     *     {@link #getSnapshot()} while the write is running
+     * @param write The task that writes the data
+     */
+    public static synchronized void submit(Object key, NBTTagCompound data, Runnable write) {
+        final PendingWrite existing = pendingWrites.get(key);
+        if (existing != null && !existing.started) {
+            // Not started yet, write the newer data instead
+            existing.data = data;
+            existing.write = write;
+            coalescedWrites++;
+            return;
+        }
+
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("Server Save Writer").setDaemon(true)
+                    .setThreadFactory(r -> thread = new Thread(r)).build());
+        }
+
+        final PendingWrite pendingWrite = new PendingWrite(data, write);
+        pendingWrites.put(key, pendingWrite);
+        pending.incrementAndGet();
+        executor.execute(() -> {
+            final Runnable task;
+            synchronized (SaveWriter.class) {
+                pendingWrite.started = true;
+                snapshot.set(pendingWrite.data);
+                task = pendingWrite.write;
+            }
+
+            try {
+                task.run();
+            } catch (Throwable e) {
+                SpongeImpl.getLogger().error("Failed to write save data", e);
+            } finally {
+                snapshot.remove();
+                synchronized (SaveWriter.class) {
+                    pendingWrites.remove(key, pendingWrite);
+                }
+                pending.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Returns whether a write for the specified key is not completed yet.
+     *
+     * @param key The key of the file
+     * @return True if the write is pending
+     */
+    public static synchronized boolean isPending(Object key) {
+        return pendingWrites.containsKey(key);
+    }
+
+    /**
+     * Returns the number of writes that were replaced by a newer write of
+     * the same file before they were started.
+     *
+     * @return The number of coalesced writes
+     */
+    public static synchronized long getCoalescedWrites() {
+        return coalescedWrites;
+    }
+
+    /**
+     * Returns the snapshot of the data that is written by the current
+     * thread.
+     *
+     * @return The snapshot, or null if the current write was not deferred
+     */
+    @Nullable
+    public static NBTTagCompound getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Waits until all pending writes are completed. Does nothing if called
+     * from the writer thread.
+     */
+    public static void awaitPending() {
+        if (pending.get() == 0 || isWriterThread()) {
+            return;
+        }
+
+        final ExecutorService executor;
+        synchronized (SaveWriter.class) {
+            executor = SaveWriter.executor;
+        }
+
+        if (executor != null) {
+            try {
+                // The writer thread runs the writes in order, so all previous writes are done once this one is
+                executor.submit(() -> {
+                }).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                SpongeImpl.getLogger().error("Failed to wait for the pending save data", e);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of writes that are not completed yet.
+     *
+     * @return The number of pending writes
+     */
+    public static int getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * Waits for the pending writes and stops the writer thread.
+     */
+    public static void shutdown() {
+        awaitPending();
+
+        synchronized (SaveWriter.class) {
+            if (executor != null) {
+                executor.shutdown();
+                executor = null;
+            }
+        }
+    }
+
+    private static final class PendingWrite {
+
+        NBTTagCompound data;
+        Runnable write;
+        boolean started;
+
+        PendingWrite(NBTTagCompound data, Runnable write) {
+            this.data = data;
+            this.write = write;
+        }
+
+    }
+
+}